@@ -0,0 +1,135 @@
+import bench.Harness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ *  The {@code LzwHarness} class is the default-package side of {@link Harness}. It sits in the
+ *  same package as the compressor, so it can drive the dictionaries, the bit streams and the
+ *  encoder and decoder directly.
+ */
+public class LzwHarness implements Harness
+{
+    private final Dictionary dictionary;
+    private final LzwEncoder encoder;
+    private final LzwDecoder decoder = new LzwDecoder();
+
+    public LzwHarness(String dictionary)
+    {
+        this.dictionary = Dictionary.create(dictionary);
+        this.encoder = new LzwEncoder(Dictionary.create(dictionary));
+    }
+
+    // The array entry point stores incompressible data, so go through the stream one to always measure the coding.
+    @Override
+    public byte[] compress(byte[] data)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        encoder.encode(new ByteArrayInputStream(data), data.length, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] compressOrStore(byte[] data)
+    {
+        return encoder.encode(data);
+    }
+
+    @Override
+    public byte[] expand(byte[] data)
+    {
+        return decoder.decode(data);
+    }
+
+    @Override
+    public int build(byte[] corpus)
+    {
+        dictionary.clear();
+        byte[] word = new byte[1];
+        for (int i = 0; i < LzwFormat.EXIT_CODE; i++)
+        {
+            word[0] = (byte) i;
+            dictionary.insert(word, i);
+        }
+
+        // Same walk as the encoder, minus the output.
+        int code = LzwFormat.FIRST_CODE;
+        int start = 0;
+        while (code < 1 << LzwFormat.DEFAULT_MAX_BITS)
+        {
+            dictionary.match(corpus, start, corpus.length);
+            int length = dictionary.matchLength();
+            if (start + length == corpus.length)
+            {
+                break;
+            }
+            dictionary.extend(corpus[start + length], code++);
+            start += length;
+        }
+        return code;
+    }
+
+    @Override
+    public int match(byte[] corpus)
+    {
+        int count = 0;
+        for (int start = 0; start < corpus.length; start += dictionary.matchLength())
+        {
+            dictionary.match(corpus, start, corpus.length);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long lookup(byte[][] words)
+    {
+        long sum = 0;
+        for (byte[] word : words)
+        {
+            sum += dictionary.lookup(word);
+        }
+        return sum;
+    }
+
+    @Override
+    public byte[][] words(byte[] corpus)
+    {
+        byte[][] words = new byte[match(corpus)][];
+        int start = 0;
+        for (int i = 0; i < words.length; i++)
+        {
+            dictionary.match(corpus, start, corpus.length);
+            int length = dictionary.matchLength();
+            words[i] = Arrays.copyOfRange(corpus, start, start + length);
+            start += length;
+        }
+        return words;
+    }
+
+    @Override
+    public byte[] writeCodes(int[] codes, int width)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) ((long) codes.length * width / 8) + 8);
+        BinaryOut out = new BinaryOut(bytes);
+        for (int code : codes)
+        {
+            out.write(code, width);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public long readCodes(byte[] data, int count, int width)
+    {
+        BinaryIn in = new BinaryIn(new ByteArrayInputStream(data));
+        long sum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            sum += in.readInt(width);
+        }
+        return sum;
+    }
+}
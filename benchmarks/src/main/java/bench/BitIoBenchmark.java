@@ -0,0 +1,68 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Writing and reading fixed-width codes through {@code BinaryOut} and {@code BinaryIn},
+ *  the instances behind {@code BinaryStdOut.write(int, int)} and {@code BinaryStdIn.readInt(int)}.
+ *  Results are in nanoseconds per code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitIoBenchmark
+{
+    private static final int CODES = 1 << 20;
+
+    @Param({"9", "12", "16"})
+    public int width;
+
+    private Harness harness;
+    private int[] codes;
+    private byte[] written;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        harness = Harness.create("array");
+        Random random = new Random(42);
+        codes = new int[CODES];
+        for (int i = 0; i < CODES; i++)
+        {
+            codes[i] = random.nextInt(1 << width);
+        }
+        written = harness.writeCodes(codes, width);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public byte[] write()
+    {
+        return harness.writeCodes(codes, width);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public long read()
+    {
+        return harness.readCodes(written, CODES, width);
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ *  The {@code Corpus} class builds the inputs the benchmarks run on. Text is the bundled
+ *  alice.txt repeated out to the requested size, and random is seeded noise that LZW
+ *  can't compress, so the two bracket what real inputs do. Random input is only coded
+ *  by benchmarks that bypass the encoder's stored path, see {@link LzwBenchmark}.
+ */
+final class Corpus
+{
+    private Corpus()
+    {
+    }
+
+    /**
+     * Returns size bytes of the named kind of input.
+     * @param kind Either {@code text} or {@code random}.
+     * @param size The number of bytes.
+     */
+    static byte[] of(String kind, int size)
+    {
+        switch (kind)
+        {
+            case "text":   return text(size);
+            case "random": return random(size);
+            default: throw new IllegalArgumentException("Unknown corpus: " + kind);
+        }
+    }
+
+    static byte[] text(int size)
+    {
+        byte[] alice = alice();
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i += alice.length)
+        {
+            System.arraycopy(alice, 0, data, i, Math.min(alice.length, size - i));
+        }
+        return data;
+    }
+
+    static byte[] random(int size)
+    {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] alice()
+    {
+        try (InputStream in = Corpus.class.getResourceAsStream("/alice.txt"))
+        {
+            if (in == null) throw new IllegalStateException("alice.txt is not on the classpath");
+            return in.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
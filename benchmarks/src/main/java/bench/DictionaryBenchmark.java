@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  The three dictionary operations LZW depends on, for each dictionary implementation:
+ *  filling a dictionary from nothing to all its codes, splitting a megabyte of text into
+ *  longest matches, and looking up every one of those matches as a whole word.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark
+{
+    private static final int CORPUS_SIZE = 1 << 20;
+
+    @Param({"tst", "array", "hash"})
+    public String dictionary;
+
+    private Harness harness;
+    private byte[] corpus;
+    private byte[][] words;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        harness = Harness.create(dictionary);
+        corpus = Corpus.text(CORPUS_SIZE);
+        harness.build(corpus);
+        words = harness.words(corpus);
+    }
+
+    @Benchmark
+    public int insert()
+    {
+        return harness.build(corpus);
+    }
+
+    @Benchmark
+    public int match()
+    {
+        return harness.match(corpus);
+    }
+
+    @Benchmark
+    public long lookup()
+    {
+        return harness.lookup(words);
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+/**
+ *  The {@code Harness} interface is how the benchmarks reach the compressor. The compressor's
+ *  classes live in the default package, which JMH will not generate benchmarks for and which
+ *  no named package can import, so a default-package adapter implements this interface and is
+ *  loaded by name once per trial. Every call is a single monomorphic interface call that the
+ *  JIT inlines, and each one does a whole unit of work so the loops being measured run inside
+ *  the compressor's own code.
+ */
+public interface Harness
+{
+    /**
+     * Compresses the given bytes with a fresh dictionary, always coding them even if they
+     * would come out bigger.
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * Compresses the given bytes the way the encoder's array entry point does, which stores data
+     * that looks incompressible instead of coding it.
+     */
+    byte[] compressOrStore(byte[] data);
+
+    /**
+     * Expands bytes written by compress.
+     */
+    byte[] expand(byte[] data);
+
+    /**
+     * Clears the dictionary and fills it the way the encoder would from the start of the corpus,
+     * until it is full or the corpus runs out.
+     * @return the number of codes in the dictionary.
+     */
+    int build(byte[] corpus);
+
+    /**
+     * Splits the corpus into longest matches against the dictionary left by build, without adding any.
+     * @return the number of matches.
+     */
+    int match(byte[] corpus);
+
+    /**
+     * Looks up each of the words in the dictionary left by build.
+     * @return the sum of the codes found.
+     */
+    long lookup(byte[][] words);
+
+    /**
+     * Returns the words found by match, in order, as separate arrays.
+     */
+    byte[][] words(byte[] corpus);
+
+    /**
+     * Writes each code with the given number of bits.
+     * @return the written bytes.
+     */
+    byte[] writeCodes(int[] codes, int width);
+
+    /**
+     * Reads count codes of the given number of bits.
+     * @return the sum of the codes read.
+     */
+    long readCodes(byte[] data, int count, int width);
+
+    /**
+     * Creates the adapter for the named dictionary implementation.
+     * @param dictionary One of {@code tst}, {@code array} or {@code hash}.
+     */
+    static Harness create(String dictionary)
+    {
+        try
+        {
+            return (Harness) Class.forName("LzwHarness").getConstructor(String.class).newInstance(dictionary);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Can't load the compressor adapter", e);
+        }
+    }
+}
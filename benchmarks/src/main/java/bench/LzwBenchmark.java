@@ -0,0 +1,105 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  End-to-end compress and expand of whole inputs. Besides operations per second, each
+ *  benchmark reports the uncompressed megabytes it got through per second as {@code mb},
+ *  and the compression ratio of the input is printed once at the start of each trial.
+ *  <p>
+ *  {@code compress} always runs the LZW coder, even on random input. {@code compressOrStore}
+ *  goes through the check that stores incompressible input as is, so on random input it
+ *  measures the stored path and on text the cost of the check on top of the coding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LzwBenchmark
+{
+    @Param({"text", "random"})
+    public String corpus;
+
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    @Param({"array"})
+    public String dictionary;
+
+    private Harness harness;
+    private byte[] raw;
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        harness = Harness.create(dictionary);
+        raw = Corpus.of(corpus, size);
+        compressed = harness.compress(raw);
+        if (!Arrays.equals(raw, harness.expand(compressed)))
+        {
+            throw new IllegalStateException("Round trip failed for " + corpus + " at " + size + " bytes");
+        }
+        byte[] stored = harness.compressOrStore(raw);
+        if (!Arrays.equals(raw, harness.expand(stored)))
+        {
+            throw new IllegalStateException("Stored round trip failed for " + corpus + " at " + size + " bytes");
+        }
+        System.out.printf("%n# %s, %d bytes -> %d bytes coded (ratio %.3f), %d bytes through compressOrStore%n",
+                corpus, raw.length, compressed.length, (double) compressed.length / raw.length, stored.length);
+    }
+
+    /**
+     * Counts the uncompressed megabytes processed, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput
+    {
+        public double mb;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            mb = 0;
+        }
+    }
+
+    @Benchmark
+    public byte[] compress(Throughput throughput)
+    {
+        throughput.mb += raw.length / 1e6;
+        return harness.compress(raw);
+    }
+
+    @Benchmark
+    public byte[] compressOrStore(Throughput throughput)
+    {
+        throughput.mb += raw.length / 1e6;
+        return harness.compressOrStore(raw);
+    }
+
+    @Benchmark
+    public byte[] expand(Throughput throughput)
+    {
+        throughput.mb += raw.length / 1e6;
+        return harness.expand(compressed);
+    }
+}
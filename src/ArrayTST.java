@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * The {@code ArrayTST} class is a ternary search trie for use with LZW compression that
+ * stores its nodes in parallel primitive arrays instead of as {@code Node} objects.
+ * A node is just an index into those arrays, every operation is iterative, and the
+ * whole trie can be cleared by resetting a counter, so repeated runs in the same
+ * process reuse the same memory instead of building and dropping an object graph.
+ * <p>
+ * Like {@link TST}, the first level is a direct-indexed array of R roots, and below it
+ * siblings are ordered by the signed value of their byte.
+ */
+public class ArrayTST implements Dictionary {
+
+    // Number of symbols in the direct-indexed first level (extended ASCII).
+    private static final int R = 256;
+    // Node 0 is never used, so 0 doubles as the null link.
+    private static final int NIL = 0;
+    private static final int INITIAL_CAPACITY = 1 << 13;
+
+    private final int[] roots = new int[R];
+    private int[] left, mid, right, code;
+    private byte[] c;
+    // Number of node slots in use, including the unused NIL slot.
+    private int size;
+
+    // The node and length of the word found by the last call to match().
+    private int matchNode;
+    private int matchLength;
+
+    public ArrayTST() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty trie with room for the given number of nodes before it has to grow.
+     * @param capacity The initial number of nodes.
+     */
+    public ArrayTST(int capacity) {
+        capacity = Math.max(capacity, 2);
+        left = new int[capacity];
+        mid = new int[capacity];
+        right = new int[capacity];
+        code = new int[capacity];
+        c = new byte[capacity];
+        size = 1;
+    }
+
+    /**
+     * Removes every word from the trie, keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        Arrays.fill(roots, NIL);
+        size = 1;
+        matchNode = NIL;
+        matchLength = 0;
+    }
+
+    /**
+     * Returns the number of nodes in the trie.
+     * @return the number of nodes.
+     */
+    public int size() {
+        return size - 1;
+    }
+
+    /**
+     * Inserts the given word-code pair into the trie.
+     * @param s The word to insert.
+     * @param wordCode The code for the given word.
+     */
+    public void insert(byte[] s, int wordCode) {
+        int first = s[0] & 0xff;
+        int n = roots[first];
+        if (n == NIL) {
+            n = newNode(s[0], EMPTY);
+            roots[first] = n;
+        }
+        for (int depth = 1; depth < s.length; depth++) {
+            n = child(n, s[depth]);
+        }
+        code[n] = wordCode;
+    }
+
+    // Returns the child of n for byte ch, creating it if it does not exist. newNode() may grow
+    // the arrays, so every new node is created before the link to it is stored.
+    private int child(int n, byte ch) {
+        int x = mid[n];
+        if (x == NIL) {
+            x = newNode(ch, EMPTY);
+            mid[n] = x;
+            return x;
+        }
+        while (true) {
+            if (ch < c[x]) {
+                if (left[x] == NIL) {
+                    int y = newNode(ch, EMPTY);
+                    left[x] = y;
+                    return y;
+                }
+                x = left[x];
+            }
+            else if (ch > c[x]) {
+                if (right[x] == NIL) {
+                    int y = newNode(ch, EMPTY);
+                    right[x] = y;
+                    return y;
+                }
+                x = right[x];
+            }
+            else return x;
+        }
+    }
+
+    /**
+     * Finds the longest word in the trie that matches the bytes of s from index start up to
+     * index end. The matched node is remembered so that matchLength() and extend() can use it afterwards.
+     * @param s The bytes to match against.
+     * @param start The starting index of the match.
+     * @param end The index one past the last byte that may be matched.
+     * @return the code of the longest matching word, or EMPTY if not even the first
+     * byte matches.
+     */
+    public int match(byte[] s, int start, int end) {
+        int n = roots[s[start] & 0xff];
+        matchNode = n;
+        matchLength = 0;
+        if (n == NIL) return EMPTY;
+        matchLength = 1;
+
+        int depth = start + 1;
+        n = mid[n];
+        while (n != NIL && depth < end) {
+            byte current = s[depth];
+            if (current < c[n])
+                n = left[n];
+            else if (current > c[n])
+                n = right[n];
+            else {
+                depth++;
+                if (code[n] != EMPTY) {
+                    matchNode = n;
+                    matchLength = depth - start;
+                }
+                n = mid[n];
+            }
+        }
+        return code[matchNode];
+    }
+
+    /**
+     * Returns the number of bytes matched by the last call to match().
+     * @return the length of the last match, or 0 if nothing matched.
+     */
+    public int matchLength() {
+        return matchLength;
+    }
+
+    /**
+     * Inserts the word formed by the last match followed by ch, attaching the new node
+     * directly below the matched node.
+     * @param ch The byte that extends the last match.
+     * @param wordCode The code for the new word.
+     */
+    public void extend(byte ch, int wordCode) {
+        if (matchNode == NIL) throw new IllegalStateException("No match to extend");
+        int n = child(matchNode, ch);
+        code[n] = wordCode;
+    }
+
+    /**
+     * Looks up the given word in the trie, returning the code associated with it.
+     * @param s The target word.
+     * @return the corresponding code. If no code is associated, or if the target word is not
+     * present, EMPTY is returned.
+     */
+    public int lookup(byte[] s) {
+        int n = roots[s[0] & 0xff];
+        int depth = 1;
+        while (n != NIL && depth < s.length) {
+            byte current = s[depth];
+            n = mid[n];
+            while (n != NIL && current != c[n]) {
+                n = current < c[n] ? left[n] : right[n];
+            }
+            depth++;
+        }
+        return n == NIL ? EMPTY : code[n];
+    }
+
+    private int newNode(byte ch, int wordCode) {
+        if (size == c.length) grow();
+        int n = size++;
+        left[n] = NIL;
+        mid[n] = NIL;
+        right[n] = NIL;
+        c[n] = ch;
+        code[n] = wordCode;
+        return n;
+    }
+
+    private void grow() {
+        int capacity = c.length * 2;
+        left = Arrays.copyOf(left, capacity);
+        mid = Arrays.copyOf(mid, capacity);
+        right = Arrays.copyOf(right, capacity);
+        code = Arrays.copyOf(code, capacity);
+        c = Arrays.copyOf(c, capacity);
+    }
+}
@@ -0,0 +1,344 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ *  The {@code BatchCompressor} class compresses or expands many files in one run, so a nightly job
+ *  over thousands of small files pays for starting the JVM and warming up the coders once instead of
+ *  once per file. Each file goes to its own path under an output directory, with the same layout as
+ *  under the input root. Compressed files get {@code SUFFIX}, which expanding takes off again.
+ *  <p>
+ *  Each file is coded on a virtual thread when the JVM has them, and otherwise on a fixed pool of
+ *  platform threads. Either way, no more than the given number of files are in flight at once.
+ *  Encoders and decoders are reused from file to file, since building their tables costs more
+ *  than coding a small file.
+ *  <p>
+ *  A file that fails doesn't stop the batch. Its partial output is deleted, and the failure is
+ *  listed in the {@link Report} along with the totals for the whole batch.
+ */
+public class BatchCompressor
+{
+    public static final String SUFFIX = ".lzw";
+    public static final int DEFAULT_CONCURRENCY = 4 * Runtime.getRuntime().availableProcessors();
+    // Files up to this size are read whole and coded as arrays, so incompressible ones are stored.
+    // Bigger ones are streamed from a mapping, and stored only if a sample of them looks already compressed.
+    private static final long SMALL_FILE = 1 << 20;
+
+    private final Supplier<LzwEncoder> newEncoder;
+    private final Supplier<LzwDecoder> newDecoder;
+    private final int concurrency;
+    // Coders that aren't in use by any file right now.
+    private final Queue<LzwEncoder> encoders = new ConcurrentLinkedQueue<>();
+    private final Queue<LzwDecoder> decoders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The outcome of a batch.
+     */
+    public static final class Report
+    {
+        private final int files;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+        private final Map<Path, Throwable> failures;
+
+        Report(int files, long bytesRead, long bytesWritten, long nanos, Map<Path, Throwable> failures)
+        {
+            this.files = files;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * Returns the number of files that were coded, not counting the ones that failed.
+         */
+        public int files()
+        {
+            return files;
+        }
+
+        /**
+         * Returns the number of bytes read from the files that were coded.
+         */
+        public long bytesRead()
+        {
+            return bytesRead;
+        }
+
+        /**
+         * Returns the number of bytes written for the files that were coded.
+         */
+        public long bytesWritten()
+        {
+            return bytesWritten;
+        }
+
+        /**
+         * Returns the wall clock time the batch took, in nanoseconds.
+         */
+        public long nanos()
+        {
+            return nanos;
+        }
+
+        /**
+         * Returns the input files that failed and why, in the order they were listed.
+         */
+        public Map<Path, Throwable> failures()
+        {
+            return failures;
+        }
+
+        /**
+         * Returns a one-line summary of the batch, with its throughput in megabytes read per second.
+         */
+        @Override
+        public String toString()
+        {
+            double seconds = nanos / 1e9;
+            return String.format("%d files, %d failed, %d -> %d bytes in %.2f s (%.1f MB/s)", files, failures.size(),
+                    bytesRead, bytesWritten, seconds, seconds == 0 ? 0 : bytesRead / 1e6 / seconds);
+        }
+    }
+
+    /**
+     * Creates a batch compressor that codes up to concurrency files at once.
+     * @param newEncoder Creates a new encoder each time it is called.
+     * @param newDecoder Creates a new decoder each time it is called.
+     * @param concurrency The most files to code at once.
+     */
+    public BatchCompressor(Supplier<LzwEncoder> newEncoder, Supplier<LzwDecoder> newDecoder, int concurrency)
+    {
+        if (concurrency < 1)
+        {
+            throw new IllegalArgumentException("Illegal concurrency: " + concurrency);
+        }
+        this.newEncoder = newEncoder;
+        this.newDecoder = newDecoder;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Compresses every regular file under the input directory into the output directory.
+     * Anything under the output directory itself is left out.
+     */
+    public Report compress(Path inputDir, Path outputDir)
+    {
+        return run(true, inputDir, walk(inputDir), outputDir);
+    }
+
+    /**
+     * Expands every regular file under the input directory into the output directory.
+     * Anything under the output directory itself is left out.
+     */
+    public Report expand(Path inputDir, Path outputDir)
+    {
+        return run(false, inputDir, walk(inputDir), outputDir);
+    }
+
+    /**
+     * Compresses or expands the listed files, each to the same path relative to root under the output
+     * directory. A file outside of root keeps its whole path under the output directory.
+     * @param compress Whether to compress or expand.
+     * @param root The directory the output layout is taken relative to.
+     * @param files The files to code, relative to the working directory or absolute.
+     * @param outputDir The directory the coded files go under.
+     */
+    public Report run(boolean compress, Path root, Iterable<Path> files, Path outputDir)
+    {
+        Path base = root.toAbsolutePath().normalize();
+        Path output = outputDir.toAbsolutePath().normalize();
+        Map<Path, Throwable> failures = new ConcurrentHashMap<>();
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong bytesWritten = new AtomicLong();
+        // The files in the order they were given, so failures are reported in that order.
+        List<Path> listed = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor(concurrency);
+        try
+        {
+            for (Path file : files)
+            {
+                Path source = file.toAbsolutePath().normalize();
+                if (source.startsWith(output))
+                {
+                    continue;
+                }
+                Path target = output.resolve(target(base, source, compress));
+                listed.add(file);
+                inFlight.acquireUninterruptibly();
+                executor.execute(() ->
+                {
+                    try
+                    {
+                        long size = Files.size(source);
+                        bytesWritten.addAndGet(code(compress, source, size, target));
+                        bytesRead.addAndGet(size);
+                    }
+                    catch (IOException e)
+                    {
+                        failed(failures, file, target, new UncheckedIOException(e));
+                    }
+                    catch (RuntimeException | Error e)
+                    {
+                        // Errors too, such as running out of memory on one huge file, so the file is reported
+                        // as failed and its partial output deleted instead of the error being lost on the worker.
+                        failed(failures, file, target, e);
+                    }
+                    finally
+                    {
+                        inFlight.release();
+                    }
+                });
+            }
+            // Wait for the last files to finish.
+            inFlight.acquireUninterruptibly(concurrency);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+        Map<Path, Throwable> ordered = new LinkedHashMap<>();
+        for (Path file : listed)
+        {
+            Throwable e = failures.get(file);
+            if (e != null)
+            {
+                ordered.put(file, e);
+            }
+        }
+        return new Report(listed.size() - ordered.size(), bytesRead.get(), bytesWritten.get(), nanos, ordered);
+    }
+
+    /**
+     * Reads a list of files to code, one path per line. Blank lines are skipped.
+     */
+    public static List<Path> readList(Path list)
+    {
+        try (Stream<String> lines = Files.lines(list))
+        {
+            return lines.filter(line -> !line.isBlank()).map(line -> Path.of(line.strip())).collect(Collectors.toList());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Codes one file with a coder nobody else is using, and returns the number of bytes written.
+    private long code(boolean compress, Path source, long size, Path target) throws IOException
+    {
+        Path parent = target.getParent();
+        if (parent != null)
+        {
+            Files.createDirectories(parent);
+        }
+        boolean small = size <= SMALL_FILE;
+        if (compress)
+        {
+            LzwEncoder encoder = encoders.poll();
+            if (encoder == null) encoder = newEncoder.get();
+            if (small) Files.write(target, encoder.encode(Files.readAllBytes(source)));
+            else encoder.encode(source, target);
+            // A coder that failed part way through is dropped rather than reused.
+            encoders.offer(encoder);
+        }
+        else
+        {
+            LzwDecoder decoder = decoders.poll();
+            if (decoder == null) decoder = newDecoder.get();
+            if (small) Files.write(target, decoder.decode(Files.readAllBytes(source)));
+            else decoder.decode(source, target);
+            decoders.offer(decoder);
+        }
+        return Files.size(target);
+    }
+
+    private static void failed(Map<Path, Throwable> failures, Path file, Path target, Throwable e)
+    {
+        failures.put(file, e);
+        try
+        {
+            Files.deleteIfExists(target);
+        }
+        catch (IOException ignored)
+        {
+            // The failure that matters is already recorded.
+        }
+    }
+
+    // Where a file goes under the output directory: compressing adds SUFFIX, expanding takes it off, or adds
+    // ".out" to a file that doesn't have it so the name still differs from the input.
+    private static Path target(Path base, Path source, boolean compress)
+    {
+        Path relative = source.startsWith(base) ? base.relativize(source) : source.getRoot().relativize(source);
+        String name = relative.getFileName().toString();
+        if (compress)
+        {
+            name += SUFFIX;
+        }
+        else if (name.endsWith(SUFFIX) && name.length() > SUFFIX.length())
+        {
+            name = name.substring(0, name.length() - SUFFIX.length());
+        }
+        else
+        {
+            name += ".out";
+        }
+        return relative.resolveSibling(name);
+    }
+
+    // Lists the regular files under a directory, in a stable order.
+    private static List<Path> walk(Path dir)
+    {
+        try (Stream<Path> paths = Files.walk(dir))
+        {
+            return paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A virtual thread per file when the JVM has them (Java 21 on), looked up by reflection so this still
+    // compiles and runs on older releases, where a fixed pool of daemon threads does the work instead.
+    private static ExecutorService newExecutor(int threads)
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newFixedThreadPool(threads, task ->
+            {
+                Thread thread = new Thread(task, "lzw-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryIn.java
+ *  Dependencies: none
+ *
+ *  Supports reading binary data from an input stream, such as
+ *  standard input, a file, a socket or an in-memory buffer.
+ *
+ ******************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ *  The <code>BinaryIn</code> data type provides methods for reading
+ *  in bits from a binary input stream. It can process the bits
+ *  one bit at a time (as a {@code boolean}),
+ *  8 bits at a time (as a {@code byte} or {@code char}),
+ *  16 bits at a time (as a {@code short}), 32 bits at a time
+ *  (as an {@code int} or {@code float}), or 64 bits at a time (as a
+ *  {@code double} or {@code long}).
+ *  <p>
+ *  Input is read a block at a time and the bits are kept in a 64-bit
+ *  window, so reading an <em>r</em>-bit value is a couple of shifts and
+ *  masks rather than <em>r</em> calls.
+ *  <p>
+ *  All primitive types are assumed to be represented using their
+ *  standard Java representations, in big-endian (most significant
+ *  byte first) order.
+ *  <p>
+ *  Unlike {@link BinaryStdIn}, each {@code BinaryIn} owns all of its state,
+ *  so any number of them can be used at once. A single instance is not thread-safe.
+ *  Errors from the underlying stream are rethrown as {@link UncheckedIOException}.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryIn {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final InputStream in;   // input stream
+    private final byte[] block;     // bytes read from in but not yet moved into buffer
+    private int position;           // index of the next unread byte in block
+    private int limit;              // number of valid bytes in block
+    private long buffer;            // bit window, the low n bits are unread
+    private int n;                  // number of unread bits in buffer
+
+    /**
+     * Initializes a binary input stream from an {@code InputStream}.
+     * @param is the {@code InputStream}
+     */
+    public BinaryIn(InputStream is) {
+        if (is == null) throw new IllegalArgumentException("InputStream is null");
+        in = is;
+        block = new byte[BLOCK_SIZE];
+    }
+
+    // read the next block from the input stream, returning false at end of file
+    private boolean fillBlock() {
+        try {
+            int count;
+            do {
+                count = in.read(block, 0, block.length);
+            } while (count == 0);
+            position = 0;
+            limit = Math.max(count, 0);
+            return count > 0;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // make at least r <= 56 bits available in buffer, returning false if the input runs out first
+    private boolean ensure(int r) {
+        while (n < r) {
+            if (position == limit && !fillBlock()) return false;
+            // top up the window with as many whole bytes as fit
+            while (n <= 56 && position < limit) {
+                buffer = (buffer << 8) | (block[position++] & 0xff);
+                n += 8;
+            }
+        }
+        return true;
+    }
+
+    // remove and return the next r <= 32 bits from buffer
+    private int take(int r) {
+        if (!ensure(r)) throw new NoSuchElementException("Reading from empty input stream");
+        n -= r;
+        return (int) ((buffer >>> n) & (-1L >>> (64 - r)));
+    }
+
+    /**
+     * Close this input stream and release any associated system resources.
+     */
+    public void close() {
+        try {
+            in.close();
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Returns true if the input stream is empty.
+     * @return true if and only if the input stream is empty
+     */
+    public boolean isEmpty() {
+        return !ensure(1);
+    }
+
+    /**
+     * Returns true if the next r bits can be read, 0 <= r <= 56. With an input
+     * stream that has nothing more for now, such as one fed from buffers as they
+     * arrive, this can be asked again once more input is there.
+     * @param r the number of bits
+     * @return true if at least r bits are available
+     */
+    public boolean hasBits(int r) {
+        if (r < 0 || r > 56) throw new IllegalArgumentException("Illegal value of r = " + r);
+        return ensure(r);
+    }
+
+    /**
+     * Skips the unread bits before the next byte boundary, such as the
+     * padding {@link BinaryOut#flush()} writes. Never reads from the input stream.
+     */
+    public void skipToByte() {
+        n -= n % 8;
+    }
+
+    /**
+     * Reads the next bit of data from the input stream and return as a boolean.
+     *
+     * @return the next bit of data from the input stream as a {@code boolean}
+     * @throws NoSuchElementException if the input stream is empty
+     */
+    public boolean readBoolean() {
+        return take(1) == 1;
+    }
+
+    /**
+     * Reads the next 8 bits from the input stream and return as an 8-bit char.
+     * Note that {@code char} is a 16-bit type;
+     * to read the next 16 bits as a char, use {@code readChar(16)}.
+     *
+     * @return the next 8 bits of data from the input stream as a {@code char}
+     * @throws NoSuchElementException if there are fewer than 8 bits available on the input stream
+     */
+    public char readChar() {
+        return (char) take(8);
+    }
+
+    /**
+     * Reads the next <em>r</em> bits from the input stream and return as an <em>r</em>-bit character.
+     *
+     * @param  r number of bits to read.
+     * @return the next r bits of data from the input stream as a {@code char}
+     * @throws NoSuchElementException if there are fewer than {@code r} bits available on the input stream
+     * @throws IllegalArgumentException unless {@code 1 <= r <= 16}
+     */
+    public char readChar(int r) {
+        if (r < 1 || r > 16) throw new IllegalArgumentException("Illegal value of r = " + r);
+        return (char) take(r);
+    }
+
+    /**
+     * Reads the remaining bytes of data from the input stream and return as a string.
+     *
+     * @return the remaining bytes of data from the input stream as a {@code String}
+     * @throws NoSuchElementException if the input stream is empty or if the number of bits
+     *         available on the input stream is not a multiple of 8 (byte-aligned)
+     */
+    public String readString() {
+        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        return new String(readAllBytes(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads all of the remaining bytes of data from the input stream in bulk.
+     *
+     * @return the remaining bytes of data from the input stream, possibly none
+     * @throws NoSuchElementException if the number of bits
+     *         available on the input stream is not a multiple of 8 (byte-aligned)
+     */
+    public byte[] readAllBytes() {
+        if (n % 8 != 0) throw new NoSuchElementException("Input is not byte-aligned");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(BLOCK_SIZE, n / 8 + limit - position));
+        while (n > 0) {
+            n -= 8;
+            bytes.write((int) (buffer >>> n));
+        }
+        bytes.write(block, position, limit - position);
+        position = limit;
+        while (fillBlock()) {
+            bytes.write(block, 0, limit);
+            position = limit;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads up to len bytes of data from the input stream into the array, starting at offset off.
+     * Blocks until at least one byte is available or the input ends.
+     *
+     * @param  b the array to read into.
+     * @param  off the offset of the first byte to fill.
+     * @param  len the maximum number of bytes to read.
+     * @return the number of bytes read, or -1 if the input stream is empty
+     * @throws NoSuchElementException if the number of bits
+     *         available on the input stream is not a multiple of 8 (byte-aligned)
+     * @throws IndexOutOfBoundsException if off and len do not describe a range of b.
+     */
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (n % 8 != 0) throw new NoSuchElementException("Input is not byte-aligned");
+        if (len == 0) return 0;
+
+        // bytes already in the bit window come first
+        int count = 0;
+        while (n > 0 && count < len) {
+            n -= 8;
+            b[off + count++] = (byte) (buffer >>> n);
+        }
+        if (count < len) {
+            if (position == limit && count == 0 && !fillBlock()) return -1;
+            int chunk = Math.min(len - count, limit - position);
+            System.arraycopy(block, position, b, off + count, chunk);
+            position += chunk;
+            count += chunk;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next 16 bits from the input stream and return as a 16-bit short.
+     *
+     * @return the next 16 bits of data from the input stream as a {@code short}
+     * @throws NoSuchElementException if there are fewer than 16 bits available on the input stream
+     */
+    public short readShort() {
+        return (short) take(16);
+    }
+
+    /**
+     * Reads the next 32 bits from the input stream and return as a 32-bit int.
+     *
+     * @return the next 32 bits of data from the input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than 32 bits available on the input stream
+     */
+    public int readInt() {
+        return take(32);
+    }
+
+    /**
+     * Reads the next <em>r</em> bits from the input stream and return as an <em>r</em>-bit int.
+     *
+     * @param  r number of bits to read.
+     * @return the next r bits of data from the input stream as a {@code int}
+     * @throws NoSuchElementException if there are fewer than {@code r} bits available on the input stream
+     * @throws IllegalArgumentException unless {@code 1 <= r <= 32}
+     */
+    public int readInt(int r) {
+        if (r < 1 || r > 32) throw new IllegalArgumentException("Illegal value of r = " + r);
+        return take(r);
+    }
+
+    /**
+     * Reads the next 64 bits from the input stream and return as a 64-bit long.
+     *
+     * @return the next 64 bits of data from the input stream as a {@code long}
+     * @throws NoSuchElementException if there are fewer than 64 bits available on the input stream
+     */
+    public long readLong() {
+        long high = take(32) & 0xffffffffL;
+        return (high << 32) | (take(32) & 0xffffffffL);
+    }
+
+    /**
+     * Reads the next 64 bits from the input stream and return as a 64-bit double.
+     *
+     * @return the next 64 bits of data from the input stream as a {@code double}
+     * @throws NoSuchElementException if there are fewer than 64 bits available on the input stream
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads the next 32 bits from the input stream and return as a 32-bit float.
+     *
+     * @return the next 32 bits of data from the input stream as a {@code float}
+     * @throws NoSuchElementException if there are fewer than 32 bits available on the input stream
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+
+    /**
+     * Reads the next 8 bits from the input stream and return as an 8-bit byte.
+     *
+     * @return the next 8 bits of data from the input stream as a {@code byte}
+     * @throws NoSuchElementException if there are fewer than 8 bits available on the input stream
+     */
+    public byte readByte() {
+        char c = readChar();
+        return (byte) (c & 0xff);
+    }
+}
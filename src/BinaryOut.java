@@ -0,0 +1,304 @@
+/******************************************************************************
+ *  Compilation:  javac BinaryOut.java
+ *  Dependencies: none
+ *
+ *  Write binary data to an output stream, either one 1-bit boolean,
+ *  one 8-bit char, one 32-bit int, one 64-bit double, one 32-bit float,
+ *  or one 64-bit long at a time. The output stream can be standard
+ *  output, a file, a socket or an in-memory buffer.
+ *
+ *  The bytes written are not aligned.
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ *  The <code>BinaryOut</code> data type provides a basic capability for
+ *  converting primitive type variables ({@code boolean}, {@code byte},
+ *  {@code char}, {@code int}, {@code long}, {@code float}, and {@code double})
+ *  to sequences of bits and writing them to an output stream.
+ *  Uses big-endian (most-significant byte first).
+ *  <p>
+ *  Bits are packed into a 64-bit accumulator and drained to an output block
+ *  32 bits at a time, so writing an <em>r</em>-bit value costs a couple of
+ *  shifts rather than <em>r</em> calls.
+ *  <p>
+ *  Unlike {@link BinaryStdOut}, each {@code BinaryOut} owns all of its state,
+ *  so any number of them can be used at once. A single instance is not thread-safe.
+ *  <p>
+ *  The client must {@code flush()} the output stream when finished writing bits.
+ *  Errors from the underlying stream are rethrown as {@link UncheckedIOException}.
+ *
+ *  @author Robert Sedgewick
+ *  @author Kevin Wayne
+ */
+public final class BinaryOut {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final OutputStream out;   // output stream
+    private final byte[] block;       // bytes waiting to be written to out
+    private int count;                // number of bytes used in block
+    private long buffer;              // bit accumulator, the low n bits are pending
+    private int n;                    // number of bits pending in buffer, always < 32
+
+    /**
+     * Initializes a binary output stream from an {@code OutputStream}.
+     * @param os the {@code OutputStream}
+     */
+    public BinaryOut(OutputStream os) {
+        if (os == null) throw new IllegalArgumentException("OutputStream is null");
+        out = os;
+        block = new byte[BLOCK_SIZE];
+    }
+
+    /**
+     * Writes the low r bits of x to the output stream, 1 <= r <= 32.
+     */
+    private void writeBits(int x, int r) {
+        // n < 32 and r <= 32, so the accumulator never overflows
+        buffer = (buffer << r) | (x & (-1L >>> (64 - r)));
+        n += r;
+
+        // drain a whole 32-bit word once one is available
+        if (n >= 32) {
+            n -= 32;
+            if (count + 4 > block.length) writeBlock();
+            int word = (int) (buffer >>> n);
+            block[count]     = (byte) (word >>> 24);
+            block[count + 1] = (byte) (word >>> 16);
+            block[count + 2] = (byte) (word >>>  8);
+            block[count + 3] = (byte)  word;
+            count += 4;
+        }
+    }
+
+    /**
+     * Writes the specified bit to the output stream.
+     */
+    private void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the 8-bit byte to the output stream.
+     */
+    private void writeByte(int x) {
+        assert x >= 0 && x < 256;
+        writeBits(x, 8);
+    }
+
+    // move any whole bytes from the accumulator into the output block
+    private void drainBytes() {
+        while (n >= 8) {
+            n -= 8;
+            if (count == block.length) writeBlock();
+            block[count++] = (byte) (buffer >>> n);
+        }
+    }
+
+    // write the output block to the underlying stream
+    private void writeBlock() {
+        try {
+            out.write(block, 0, count);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+
+    // write out any remaining bits in buffer to the output stream, padding with 0s
+    private void clearBuffer() {
+        drainBytes();
+        if (n == 0) return;
+        if (count == block.length) writeBlock();
+        block[count++] = (byte) (buffer << (8 - n));
+        n = 0;
+        buffer = 0;
+    }
+
+    /**
+     * Flushes the output stream, padding 0s if number of bits written so far
+     * is not a multiple of 8.
+     */
+    public void flush() {
+        clearBuffer();
+        writeBlock();
+        try {
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the output stream. Once the output stream is closed, you can no
+     * longer write bits to it.
+     */
+    public void close() {
+        flush();
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the specified bit to the output stream.
+     * @param x the {@code boolean} to write.
+     */
+    public void write(boolean x) {
+        writeBit(x);
+    }
+
+    /**
+     * Writes the 8-bit byte to the output stream.
+     * @param x the {@code byte} to write.
+     */
+    public void write(byte x) {
+        writeByte(x & 0xff);
+    }
+
+    /**
+     * Writes the 32-bit int to the output stream.
+     * @param x the {@code int} to write.
+     */
+    public void write(int x) {
+        writeBits(x, 32);
+    }
+
+    /**
+     * Writes the <em>r</em>-bit int to the output stream.
+     * @param x the {@code int} to write.
+     * @param r the number of relevant bits in the char.
+     * @throws IllegalArgumentException if {@code r} is not between 1 and 32.
+     * @throws IllegalArgumentException if {@code x} is not between 0 and 2<sup>r</sup> - 1.
+     */
+    public void write(int x, int r) {
+        if (r == 32) {
+            write(x);
+            return;
+        }
+        if (r < 1 || r > 32)        throw new IllegalArgumentException("Illegal value for r = " + r);
+        if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
+        writeBits(x, r);
+    }
+
+    /**
+     * Writes len bytes from the array, starting at offset off, to the output stream.
+     * When the output is byte-aligned the bytes are copied straight into the
+     * output block instead of being packed one at a time.
+     * @param b the bytes to write.
+     * @param off the offset of the first byte to write.
+     * @param len the number of bytes to write.
+     * @throws IndexOutOfBoundsException if off and len do not describe a range of b.
+     */
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        drainBytes();
+        if (n != 0) {
+            for (int i = off; i < off + len; i++)
+                writeBits(b[i], 8);
+            return;
+        }
+
+        while (len > 0) {
+            if (count == block.length) writeBlock();
+            int chunk = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Writes the 64-bit double to the output stream.
+     * @param x the {@code double} to write.
+     */
+    public void write(double x) {
+        write(Double.doubleToRawLongBits(x));
+    }
+
+    /**
+     * Writes the 64-bit long to the output stream.
+     * @param x the {@code long} to write.
+     */
+    public void write(long x) {
+        writeBits((int) (x >>> 32), 32);
+        writeBits((int) x, 32);
+    }
+
+    /**
+     * Writes the 32-bit float to the output stream.
+     * @param x the {@code float} to write.
+     */
+    public void write(float x) {
+        write(Float.floatToRawIntBits(x));
+    }
+
+    /**
+     * Writes the 16-bit int to the output stream.
+     * @param x the {@code short} to write.
+     */
+    public void write(short x) {
+        writeBits(x, 16);
+    }
+
+    /**
+     * Writes the 8-bit char to the output stream.
+     * @param x the {@code char} to write.
+     * @throws IllegalArgumentException if {@code x} is not between 0 and 255.
+     */
+    public void write(char x) {
+        if (x < 0 || x >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + x);
+        writeByte(x);
+    }
+
+    /**
+     * Writes the <em>r</em>-bit char to the output stream.
+     * @param x the {@code char} to write.
+     * @param r the number of relevant bits in the char.
+     * @throws IllegalArgumentException if {@code r} is not between 1 and 16.
+     * @throws IllegalArgumentException if {@code x} is not between 0 and 2<sup>r</sup> - 1.
+     */
+    public void write(char x, int r) {
+        if (r == 8) {
+            write(x);
+            return;
+        }
+        if (r < 1 || r > 16) throw new IllegalArgumentException("Illegal value for r = " + r);
+        if (x >= (1 << r))   throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
+        writeBits(x, r);
+    }
+
+    /**
+     * Writes the string of 8-bit characters to the output stream.
+     * @param s the {@code String} to write.
+     * @throws IllegalArgumentException if any character in the string is not
+     * between 0 and 255.
+     */
+    public void write(String s) {
+        for (int i = 0; i < s.length(); i++)
+            write(s.charAt(i));
+    }
+
+    /**
+     * Writes the string of <em>r</em>-bit characters to the output stream.
+     * @param s the {@code String} to write.
+     * @param r the number of relevant bits in each character.
+     * @throws IllegalArgumentException if r is not between 1 and 16.
+     * @throws IllegalArgumentException if any character in the string is not
+     * between 0 and 2<sup>r</sup> - 1.
+     */
+    public void write(String s, int r) {
+        for (int i = 0; i < s.length(); i++)
+            write(s.charAt(i), r);
+    }
+}
@@ -10,8 +10,6 @@
  *
  ******************************************************************************/
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
 import java.util.NoSuchElementException;
 
 /**
@@ -23,6 +21,8 @@ import java.util.NoSuchElementException;
  *  (as an {@code int} or {@code float}), or 64 bits at a time (as a
  *  {@code double} or {@code long}).
  *  <p>
+ *  It is a static wrapper around a single {@link BinaryIn} over standard input.
+ *  <p>
  *  All primitive types are assumed to be represented using their
  *  standard Java representations, in big-endian (most significant
  *  byte first) order.
@@ -35,49 +35,30 @@ import java.util.NoSuchElementException;
  *  @author Kevin Wayne
  */
 public final class BinaryStdIn {
-    private static final int EOF = -1;      // end of file
-
-    private static BufferedInputStream in;  // input stream
-    private static int buffer;              // one character buffer
-    private static int n;                   // number of bits left in buffer
+    private static BinaryIn in;             // binary input stream over standard input
     private static boolean isInitialized;   // has BinaryStdIn been called for first time?
 
     // don't instantiate
     private BinaryStdIn() { }
 
-    // fill buffer
+    // initialize BinaryStdIn
     private static void initialize() {
-        in = new BufferedInputStream(System.in);
-        buffer = 0;
-        n = 0;
-        fillBuffer();
+        in = new BinaryIn(System.in);
         isInitialized = true;
     }
 
-    private static void fillBuffer() {
-        try {
-            buffer = in.read();
-            n = 8;
-        }
-        catch (IOException e) {
-            System.out.println("EOF");
-            buffer = EOF;
-            n = -1;
-        }
+    // the binary input stream, initialized on first use
+    private static BinaryIn in() {
+        if (!isInitialized) initialize();
+        return in;
     }
 
     /**
      * Close this input stream and release any associated system resources.
      */
     public static void close() {
-        if (!isInitialized) initialize();
-        try {
-            in.close();
-            isInitialized = false;
-        }
-        catch (IOException ioe) {
-            throw new IllegalStateException("Could not close BinaryStdIn", ioe);
-        }
+        in().close();
+        isInitialized = false;
     }
 
     /**
@@ -85,8 +66,7 @@ public final class BinaryStdIn {
      * @return true if and only if standard input is empty
      */
     public static boolean isEmpty() {
-        if (!isInitialized) initialize();
-        return buffer == EOF;
+        return in().isEmpty();
     }
 
     /**
@@ -96,11 +76,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if standard input is empty
      */
     public static boolean readBoolean() {
-        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
-        n--;
-        boolean bit = ((buffer >> n) & 1) == 1;
-        if (n == 0) fillBuffer();
-        return bit;
+        return in().readBoolean();
     }
 
     /**
@@ -112,26 +88,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 8 bits available on standard input
      */
     public static char readChar() {
-        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
-
-        // special case when aligned byte
-        if (n == 8) {
-            int x = buffer;
-            fillBuffer();
-            return (char) (x & 0xff);
-        }
-
-        // combine last n bits of current buffer with first 8-n bits of new buffer
-        int x = buffer;
-        x <<= (8 - n);
-        int oldN = n;
-        fillBuffer();
-        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
-        n = oldN;
-        x |= (buffer >>> n);
-        return (char) (x & 0xff);
-        // the above code doesn't quite work for the last character if n = 8
-        // because buffer will be -1, so there is a special case for aligned byte
+        return in().readChar();
     }
 
     /**
@@ -143,18 +100,7 @@ public final class BinaryStdIn {
      * @throws IllegalArgumentException unless {@code 1 <= r <= 16}
      */
     public static char readChar(int r) {
-        if (r < 1 || r > 16) throw new IllegalArgumentException("Illegal value of r = " + r);
-
-        // optimize r = 8 case
-        if (r == 8) return readChar();
-
-        char x = 0;
-        for (int i = 0; i < r; i++) {
-            x <<= 1;
-            boolean bit = readBoolean();
-            if (bit) x |= 1;
-        }
-        return x;
+        return in().readChar(r);
     }
 
     /**
@@ -165,16 +111,35 @@ public final class BinaryStdIn {
      *         available on standard input is not a multiple of 8 (byte-aligned)
      */
     public static String readString() {
-        if (isEmpty()) throw new NoSuchElementException("Reading from empty input stream");
+        return in().readString();
+    }
 
-        StringBuilder sb = new StringBuilder();
-        while (!isEmpty()) {
-            char c = readChar();
-            sb.append(c);
-        }
-        return sb.toString();
+    /**
+     * Reads all of the remaining bytes of data from standard input in bulk.
+     *
+     * @return the remaining bytes of data from standard input, possibly none
+     * @throws NoSuchElementException if the number of bits
+     *         available on standard input is not a multiple of 8 (byte-aligned)
+     */
+    public static byte[] readAllBytes() {
+        return in().readAllBytes();
     }
 
+    /**
+     * Reads up to len bytes of data from standard input into the array, starting at offset off.
+     * Blocks until at least one byte is available or the input ends.
+     *
+     * @param  b the array to read into.
+     * @param  off the offset of the first byte to fill.
+     * @param  len the maximum number of bytes to read.
+     * @return the number of bytes read, or -1 if standard input is empty
+     * @throws NoSuchElementException if the number of bits
+     *         available on standard input is not a multiple of 8 (byte-aligned)
+     * @throws IndexOutOfBoundsException if off and len do not describe a range of b.
+     */
+    public static int read(byte[] b, int off, int len) {
+        return in().read(b, off, len);
+    }
 
     /**
      * Reads the next 16 bits from standard input and return as a 16-bit short.
@@ -183,13 +148,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 16 bits available on standard input
      */
     public static short readShort() {
-        short x = 0;
-        for (int i = 0; i < 2; i++) {
-            char c = readChar();
-            x <<= 8;
-            x |= c;
-        }
-        return x;
+        return in().readShort();
     }
 
     /**
@@ -199,13 +158,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 32 bits available on standard input
      */
     public static int readInt() {
-        int x = 0;
-        for (int i = 0; i < 4; i++) {
-            char c = readChar();
-            x <<= 8;
-            x |= c;
-        }
-        return x;
+        return in().readInt();
     }
 
     /**
@@ -217,18 +170,7 @@ public final class BinaryStdIn {
      * @throws IllegalArgumentException unless {@code 1 <= r <= 32}
      */
     public static int readInt(int r) {
-        if (r < 1 || r > 32) throw new IllegalArgumentException("Illegal value of r = " + r);
-
-        // optimize r = 32 case
-        if (r == 32) return readInt();
-
-        int x = 0;
-        for (int i = 0; i < r; i++) {
-            x <<= 1;
-            boolean bit = readBoolean();
-            if (bit) x |= 1;
-        }
-        return x;
+        return in().readInt(r);
     }
 
     /**
@@ -238,16 +180,9 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 64 bits available on standard input
      */
     public static long readLong() {
-        long x = 0;
-        for (int i = 0; i < 8; i++) {
-            char c = readChar();
-            x <<= 8;
-            x |= c;
-        }
-        return x;
+        return in().readLong();
     }
 
-
     /**
      * Reads the next 64 bits from standard input and return as a 64-bit double.
      *
@@ -255,7 +190,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 64 bits available on standard input
      */
     public static double readDouble() {
-        return Double.longBitsToDouble(readLong());
+        return in().readDouble();
     }
 
     /**
@@ -265,7 +200,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 32 bits available on standard input
      */
     public static float readFloat() {
-        return Float.intBitsToFloat(readInt());
+        return in().readFloat();
     }
 
 
@@ -276,8 +211,7 @@ public final class BinaryStdIn {
      * @throws NoSuchElementException if there are fewer than 8 bits available on standard input
      */
     public static byte readByte() {
-        char c = readChar();
-        return (byte) (c & 0xff);
+        return in().readByte();
     }
 
     /**
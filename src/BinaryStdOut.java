@@ -10,8 +10,6 @@
  *  The bytes written are not aligned.
  *
  ******************************************************************************/
-import java.io.BufferedOutputStream;
-import java.io.IOException;
 
 /**
  *  The <code>BinaryStdOut</code> class provides static methods for converting
@@ -20,6 +18,8 @@ import java.io.IOException;
  *  to sequences of bits and writing them to standard output.
  *  Uses big-endian (most-significant byte first).
  *  <p>
+ *  It is a static wrapper around a single {@link BinaryOut} over standard output.
+ *  <p>
  *  The client must {@code flush()} the output stream when finished writing bits.
  *  <p>
  *  The client should not intermix calls to {@code BinaryStdOut} with calls
@@ -30,9 +30,7 @@ import java.io.IOException;
  *  @author Kevin Wayne
  */
 public final class BinaryStdOut {
-    private static BufferedOutputStream out;  // output stream (standard output)
-    private static int buffer;                // 8-bit buffer of bits to write
-    private static int n;                     // number of bits remaining in buffer
+    private static BinaryOut out;             // binary output stream over standard output
     private static boolean isInitialized;     // has BinaryStdOut been called for first time?
 
     // don't instantiate
@@ -40,67 +38,14 @@ public final class BinaryStdOut {
 
     // initialize BinaryStdOut
     private static void initialize() {
-        out = new BufferedOutputStream(System.out);
-        buffer = 0;
-        n = 0;
+        out = new BinaryOut(System.out);
         isInitialized = true;
     }
 
-    /**
-     * Writes the specified bit to standard output.
-     */
-    private static void writeBit(boolean bit) {
-        if (!isInitialized) initialize();
-
-        // add bit to buffer
-        buffer <<= 1;
-        if (bit) buffer |= 1;
-
-        // if buffer is full (8 bits), write out as a single byte
-        n++;
-        if (n == 8) clearBuffer();
-    }
-
-    /**
-     * Writes the 8-bit byte to standard output.
-     */
-    private static void writeByte(int x) {
-        if (!isInitialized) initialize();
-
-        assert x >= 0 && x < 256;
-
-        // optimized if byte-aligned
-        if (n == 0) {
-            try {
-                out.write(x);
-            }
-            catch (IOException e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-
-        // otherwise write one bit at a time
-        for (int i = 0; i < 8; i++) {
-            boolean bit = ((x >>> (8 - i - 1)) & 1) == 1;
-            writeBit(bit);
-        }
-    }
-
-    // write out any remaining bits in buffer to standard output, padding with 0s
-    private static void clearBuffer() {
+    // the binary output stream, initialized on first use
+    private static BinaryOut out() {
         if (!isInitialized) initialize();
-
-        if (n == 0) return;
-        if (n > 0) buffer <<= (8 - n);
-        try {
-            out.write(buffer);
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
-        n = 0;
-        buffer = 0;
+        return out;
     }
 
     /**
@@ -108,13 +53,7 @@ public final class BinaryStdOut {
      * is not a multiple of 8.
      */
     public static void flush() {
-        clearBuffer();
-        try {
-            out.flush();
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
+        out().flush();
     }
 
     /**
@@ -122,23 +61,16 @@ public final class BinaryStdOut {
      * longer write bits to it.
      */
     public static void close() {
-        flush();
-        try {
-            out.close();
-            isInitialized = false;
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
+        out().close();
+        isInitialized = false;
     }
 
-
     /**
      * Writes the specified bit to standard output.
      * @param x the {@code boolean} to write.
      */
     public static void write(boolean x) {
-        writeBit(x);
+        out().write(x);
     }
 
     /**
@@ -146,7 +78,7 @@ public final class BinaryStdOut {
      * @param x the {@code byte} to write.
      */
     public static void write(byte x) {
-        writeByte(x & 0xff);
+        out().write(x);
     }
 
     /**
@@ -154,10 +86,7 @@ public final class BinaryStdOut {
      * @param x the {@code int} to write.
      */
     public static void write(int x) {
-        writeByte((x >>> 24) & 0xff);
-        writeByte((x >>> 16) & 0xff);
-        writeByte((x >>>  8) & 0xff);
-        writeByte((x >>>  0) & 0xff);
+        out().write(x);
     }
 
     /**
@@ -168,16 +97,20 @@ public final class BinaryStdOut {
      * @throws IllegalArgumentException if {@code x} is not between 0 and 2<sup>r</sup> - 1.
      */
     public static void write(int x, int r) {
-        if (r == 32) {
-            write(x);
-            return;
-        }
-        if (r < 1 || r > 32)        throw new IllegalArgumentException("Illegal value for r = " + r);
-        if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
-        for (int i = 0; i < r; i++) {
-            boolean bit = ((x >>> (r - i - 1)) & 1) == 1;
-            writeBit(bit);
-        }
+        out().write(x, r);
+    }
+
+    /**
+     * Writes len bytes from the array, starting at offset off, to standard output.
+     * When the output is byte-aligned the bytes are copied straight into the
+     * output block instead of being packed one at a time.
+     * @param b the bytes to write.
+     * @param off the offset of the first byte to write.
+     * @param len the number of bytes to write.
+     * @throws IndexOutOfBoundsException if off and len do not describe a range of b.
+     */
+    public static void write(byte[] b, int off, int len) {
+        out().write(b, off, len);
     }
 
     /**
@@ -185,7 +118,7 @@ public final class BinaryStdOut {
      * @param x the {@code double} to write.
      */
     public static void write(double x) {
-        write(Double.doubleToRawLongBits(x));
+        out().write(x);
     }
 
     /**
@@ -193,14 +126,7 @@ public final class BinaryStdOut {
      * @param x the {@code long} to write.
      */
     public static void write(long x) {
-        writeByte((int) ((x >>> 56) & 0xff));
-        writeByte((int) ((x >>> 48) & 0xff));
-        writeByte((int) ((x >>> 40) & 0xff));
-        writeByte((int) ((x >>> 32) & 0xff));
-        writeByte((int) ((x >>> 24) & 0xff));
-        writeByte((int) ((x >>> 16) & 0xff));
-        writeByte((int) ((x >>>  8) & 0xff));
-        writeByte((int) ((x >>>  0) & 0xff));
+        out().write(x);
     }
 
     /**
@@ -208,7 +134,7 @@ public final class BinaryStdOut {
      * @param x the {@code float} to write.
      */
     public static void write(float x) {
-        write(Float.floatToRawIntBits(x));
+        out().write(x);
     }
 
     /**
@@ -216,8 +142,7 @@ public final class BinaryStdOut {
      * @param x the {@code short} to write.
      */
     public static void write(short x) {
-        writeByte((x >>>  8) & 0xff);
-        writeByte((x >>>  0) & 0xff);
+        out().write(x);
     }
 
     /**
@@ -226,8 +151,7 @@ public final class BinaryStdOut {
      * @throws IllegalArgumentException if {@code x} is not between 0 and 255.
      */
     public static void write(char x) {
-        if (x < 0 || x >= 256) throw new IllegalArgumentException("Illegal 8-bit char = " + x);
-        writeByte(x);
+        out().write(x);
     }
 
     /**
@@ -238,16 +162,7 @@ public final class BinaryStdOut {
      * @throws IllegalArgumentException if {@code x} is not between 0 and 2<sup>r</sup> - 1.
      */
     public static void write(char x, int r) {
-        if (r == 8) {
-            write(x);
-            return;
-        }
-        if (r < 1 || r > 16) throw new IllegalArgumentException("Illegal value for r = " + r);
-        if (x >= (1 << r))   throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
-        for (int i = 0; i < r; i++) {
-            boolean bit = ((x >>> (r - i - 1)) & 1) == 1;
-            writeBit(bit);
-        }
+        out().write(x, r);
     }
 
     /**
@@ -257,8 +172,7 @@ public final class BinaryStdOut {
      * between 0 and 255.
      */
     public static void write(String s) {
-        for (int i = 0; i < s.length(); i++)
-            write(s.charAt(i));
+        out().write(s);
     }
 
     /**
@@ -270,8 +184,7 @@ public final class BinaryStdOut {
      * between 0 and 2<sup>r</sup> - 1.
      */
     public static void write(String s, int r) {
-        for (int i = 0; i < s.length(); i++)
-            write(s.charAt(i), r);
+        out().write(s, r);
     }
 
     /**
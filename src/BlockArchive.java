@@ -0,0 +1,287 @@
+/******************************************************************************
+ *  Compilation:  javac BlockArchive.java
+ *  Execution:    java BlockArchive archive offset length
+ *  Dependencies: BlockIndex.java LzwDecoder.java
+ *
+ *  Writes length bytes of the uncompressed data, starting at offset, from an
+ *  indexed block container to standard output, expanding only the blocks that
+ *  cover that range.
+ *
+ *  % java -Dlzw.blockSize=65536 -Dlzw.index=true TextCompressor - < alice.txt > alice.lzw
+ *  % java BlockArchive alice.lzw 100000 20
+ *
+ *  Containers written with -Dlzw.preset need the same -Dlzw.preset here.
+ *
+ ******************************************************************************/
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+
+/**
+ *  The {@code BlockArchive} class gives random access to the uncompressed bytes of an
+ *  indexed block container written by {@link BlockCompressor}. Reading a byte range looks
+ *  up the covering blocks in the {@link BlockIndex} and expands only those, so jumping into
+ *  the middle of a large archive costs one or two blocks instead of everything before it.
+ *  <p>
+ *  Reads use positional channel reads, and each thread takes a decoder from a small pool that
+ *  keeps its tables between blocks, so one archive can be read from many threads at once.
+ *  Errors from the underlying file are rethrown as {@link UncheckedIOException}.
+ */
+public class BlockArchive implements Closeable
+{
+    private final FileChannel channel;
+    private final BlockIndex index;
+    private final PresetDictionary[] presets;
+    // Decoders that no read is using right now. There are never more than the number of threads reading at once.
+    private final Queue<LzwDecoder> decoders = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Opens an indexed block container.
+     * @param path The file holding the container.
+     * @throws IllegalStateException if the file is not an indexed block container.
+     */
+    public BlockArchive(Path path)
+    {
+        this(path, new PresetDictionary[0]);
+    }
+
+    /**
+     * Opens an indexed block container whose blocks may be coded with any of the given presets.
+     * @param path The file holding the container.
+     * @param presets The preset dictionaries the blocks may need.
+     * @throws IllegalStateException if the file is not an indexed block container.
+     */
+    public BlockArchive(Path path, PresetDictionary... presets)
+    {
+        this.presets = presets.clone();
+        try
+        {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        try
+        {
+            index = readIndex();
+        }
+        catch (RuntimeException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    // Finds the footer at the end of the file and reads the index it points to.
+    private BlockIndex readIndex()
+    {
+        long size = size(channel);
+        if (size < 2 * Integer.BYTES + BlockIndex.FOOTER_SIZE || readAt(0, Integer.BYTES).getInt() != BlockCompressor.BLOCK_MAGIC)
+        {
+            throw new IllegalStateException("Not a block container");
+        }
+        ByteBuffer footer = readAt(size - BlockIndex.FOOTER_SIZE, BlockIndex.FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        if (footer.getInt() != BlockIndex.INDEX_MAGIC)
+        {
+            throw new IllegalStateException("Block container has no index");
+        }
+        long indexLength = size - BlockIndex.FOOTER_SIZE - indexOffset;
+        if (indexOffset < 0 || indexLength < 0 || indexLength > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Corrupt block index footer");
+        }
+        return BlockIndex.read(readAt(indexOffset, (int) indexLength));
+    }
+
+    /**
+     * Returns the total number of uncompressed bytes in the archive.
+     * @return the uncompressed size.
+     */
+    public long size()
+    {
+        return index.rawSize();
+    }
+
+    /**
+     * Returns the number of blocks in the archive.
+     * @return the number of blocks.
+     */
+    public int blockCount()
+    {
+        return index.count();
+    }
+
+    /**
+     * Returns the uncompressed offset that the given block starts at.
+     * @param block The block number, from 0 to blockCount() - 1.
+     * @return the offset of the block's first byte in the uncompressed data.
+     */
+    public long blockOffset(int block)
+    {
+        checkBlock(block);
+        return index.rawOffset(block);
+    }
+
+    /**
+     * Returns the block that holds the given uncompressed offset.
+     * @param offset An offset from 0 to size() - 1.
+     * @return the block number.
+     */
+    public int blockAt(long offset)
+    {
+        if (offset < 0 || offset >= size()) throw new IndexOutOfBoundsException("Offset " + offset + " out of range");
+        return index.blockAt(offset);
+    }
+
+    /**
+     * Expands a single block.
+     * @param block The block number, from 0 to blockCount() - 1.
+     * @return the uncompressed bytes of the block.
+     * @throws IllegalStateException if the block is corrupt.
+     */
+    public byte[] readBlock(int block)
+    {
+        checkBlock(block);
+        ByteBuffer entry = readAt(index.containerOffset(block), 2 * Integer.BYTES);
+        int rawLength = entry.getInt();
+        int compressedLength = entry.getInt();
+        if (rawLength != index.rawLength(block) || compressedLength < 0
+                || compressedLength > LzwFormat.maxEncodedLength(rawLength))
+        {
+            throw new IllegalStateException("Block table entry " + block + " does not match the index");
+        }
+        ByteBuffer compressed = readAt(index.containerOffset(block) + 2 * Integer.BYTES, compressedLength);
+        LzwDecoder decoder = decoders.poll();
+        if (decoder == null)
+        {
+            decoder = new LzwDecoder(presets);
+        }
+        byte[] raw = decoder.decode(compressed.array());
+        // A decoder that failed part way through is dropped rather than reused.
+        decoders.offer(decoder);
+        if (raw.length != rawLength)
+        {
+            throw new IllegalStateException("Block " + block + " expanded to " + raw.length + " bytes, expected " + rawLength);
+        }
+        return raw;
+    }
+
+    /**
+     * Expands a range of the uncompressed data, touching only the blocks that cover it.
+     * @param offset The uncompressed offset of the first byte to read.
+     * @param length The number of bytes to read.
+     * @return the bytes from offset to offset + length.
+     * @throws IndexOutOfBoundsException if the range is not inside the archive.
+     */
+    public byte[] read(long offset, int length)
+    {
+        return read(offset, length, this::readBlock);
+    }
+
+    // Copies a range of the uncompressed data out of the covering blocks, getting each block from blocks.
+    byte[] read(long offset, int length, IntFunction<byte[]> blocks)
+    {
+        if (offset < 0 || length < 0 || offset + length > size())
+        {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " out of range");
+        }
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length)
+        {
+            long position = offset + copied;
+            int block = index.blockAt(position);
+            byte[] raw = blocks.apply(block);
+            int from = (int) (position - index.rawOffset(block));
+            int chunk = Math.min(length - copied, raw.length - from);
+            System.arraycopy(raw, from, result, copied, chunk);
+            copied += chunk;
+        }
+        return result;
+    }
+
+    /**
+     * Closes the underlying file.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkBlock(int block)
+    {
+        if (block < 0 || block >= index.count()) throw new IndexOutOfBoundsException("No block " + block);
+    }
+
+    // Reads exactly length bytes at the given file position into a new heap buffer, ready to read from.
+    private ByteBuffer readAt(long position, int length)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                {
+                    throw new EOFException("Unexpected end of block container");
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip();
+    }
+
+    private static long size(FileChannel channel)
+    {
+        try
+        {
+            return channel.size();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a byte range out of an indexed block container and writes it to standard output.
+     *
+     * @param args the archive file, the uncompressed offset and the number of bytes
+     */
+    public static void main(String[] args)
+    {
+        String preset = System.getProperty("lzw.preset");
+        PresetDictionary[] presets = preset == null ? new PresetDictionary[0]
+                : new PresetDictionary[] { PresetDictionary.read(Path.of(preset)) };
+        try (BlockArchive archive = new BlockArchive(Path.of(args[0]), presets))
+        {
+            long offset = Long.parseLong(args[1]);
+            int length = Integer.parseInt(args[2]);
+            byte[] bytes = archive.read(offset, length);
+            BinaryStdOut.write(bytes, 0, bytes.length);
+            BinaryStdOut.flush();
+        }
+    }
+}
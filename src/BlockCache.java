@@ -0,0 +1,219 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ *  The {@code BlockCache} class keeps recently expanded blocks in memory, keyed by the
+ *  archive they came from and their block number. It is bounded by the total number of
+ *  uncompressed bytes it holds rather than by a count of blocks, and evicts the least
+ *  recently used blocks first once that budget is exceeded.
+ *  <p>
+ *  Hit, miss and eviction counts are kept so callers can see how well the cache is working.
+ *  All methods are thread-safe. Blocks are loaded outside the lock, so a slow expand does
+ *  not hold up readers of other blocks, at the cost of occasionally expanding the same
+ *  block twice when two threads miss on it at once.
+ *  <p>
+ *  A block whose archive is invalidated while it loads is handed out but never cached, so a
+ *  load that was already running when the archive was replaced can't put the old file's bytes
+ *  back. The cache only keeps track of an archive for this while one of its loads is running.
+ */
+public class BlockCache
+{
+    private final long maxBytes;
+    // Access-ordered, so iteration starts at the least recently used block.
+    private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    // The archives with loads running, each with how many and how often it was invalidated since the first
+    // of them started. An archive is dropped from here when its last load is done.
+    private final HashMap<String, Loads> loading = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     * @param maxBytes The most uncompressed bytes the cache may hold.
+     */
+    public BlockCache(long maxBytes)
+    {
+        if (maxBytes < 0) throw new IllegalArgumentException("Illegal cache size: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached block, or loads it and adds it to the cache.
+     * The returned array is shared with the cache and must not be modified.
+     * @param archive The name of the archive the block belongs to.
+     * @param block The block number.
+     * @param loader Expands the block on a miss.
+     * @return the uncompressed bytes of the block.
+     */
+    public byte[] get(String archive, int block, Supplier<byte[]> loader)
+    {
+        Key key = new Key(archive, block);
+        Loads loads;
+        long generation;
+        synchronized (this)
+        {
+            byte[] cached = blocks.get(key);
+            if (cached != null)
+            {
+                hits++;
+                return cached;
+            }
+            misses++;
+            loads = loading.computeIfAbsent(archive, name -> new Loads());
+            loads.count++;
+            generation = loads.generation;
+        }
+
+        byte[] loaded = null;
+        try
+        {
+            loaded = loader.get();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (--loads.count == 0)
+                {
+                    loading.remove(archive);
+                }
+                // A block bigger than the whole cache is handed out but never kept, and neither is one from an
+                // archive that was invalidated while it loaded.
+                if (loaded != null && loaded.length <= maxBytes && loads.generation == generation)
+                {
+                    byte[] previous = blocks.put(key, loaded);
+                    if (previous != null)
+                    {
+                        bytes -= previous.length;
+                    }
+                    bytes += loaded.length;
+                    evict();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Drops least recently used blocks until the cache is back within its budget.
+    private void evict()
+    {
+        Iterator<Map.Entry<Key, byte[]>> eldest = blocks.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext())
+        {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes every block of the given archive, for example after it has been replaced.
+     * Loads of its blocks that are still running won't be cached.
+     * @param archive The name of the archive.
+     */
+    public synchronized void invalidate(String archive)
+    {
+        Loads loads = loading.get(archive);
+        if (loads != null)
+        {
+            loads.generation++;
+        }
+        Iterator<Map.Entry<Key, byte[]>> entries = blocks.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<Key, byte[]> entry = entries.next();
+            if (entry.getKey().archive.equals(archive))
+            {
+                bytes -= entry.getValue().length;
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of uncompressed bytes currently cached.
+     */
+    public synchronized long bytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of blocks currently cached.
+     */
+    public synchronized int size()
+    {
+        return blocks.size();
+    }
+
+    /**
+     * Returns the number of lookups that found their block in the cache.
+     */
+    public synchronized long hits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to expand their block.
+     */
+    public synchronized long misses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of blocks evicted to stay within the budget.
+     */
+    public synchronized long evictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "BlockCache[" + blocks.size() + " blocks, " + bytes + "/" + maxBytes + " bytes, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions]";
+    }
+
+    // The loads running for one archive, and how many times it was invalidated while any of them were.
+    private static final class Loads
+    {
+        int count;
+        long generation;
+    }
+
+    // Identifies one block of one archive.
+    private static final class Key
+    {
+        final String archive;
+        final int block;
+
+        Key(String archive, int block)
+        {
+            this.archive = archive;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return block == other.block && archive.equals(other.archive);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(archive, block);
+        }
+    }
+}
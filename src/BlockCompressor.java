@@ -0,0 +1,334 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ *  The {@code BlockCompressor} class splits its input into independent blocks and
+ *  compresses them concurrently on a {@link ForkJoinPool}, each with its own dictionary.
+ *  Expanding works the same way: blocks are decoded in parallel and written back in order.
+ *  Only a bounded number of blocks are in flight at once, so memory stays proportional
+ *  to the block size times the parallelism, not to the size of the input.
+ *  <p>
+ *  The container starts with a header, {@code BLOCK_MAGIC} and the block size, followed by
+ *  one entry per block: the uncompressed length, the compressed length, and the block's own
+ *  LZW stream. An entry with an uncompressed length of 0 ends the container. Blocks that LZW
+ *  can't shrink, such as compressed attachments, are stored as they are inside their stream,
+ *  so they cost a few bytes of header and no coding time, and are copied straight out.
+ *  <p>
+ *  An indexed container also has a {@link BlockIndex} after the end entry, which
+ *  {@link BlockArchive} uses to expand any byte range by touching only the blocks that cover it.
+ *  Readers that expand the whole container ignore it.
+ *  <p>
+ *  Errors from the underlying streams are rethrown as {@link UncheckedIOException}.
+ */
+public class BlockCompressor
+{
+    // "LZWB". No plain LZW stream can start with this, it starts with "LZ" and a version or code width byte
+    // that is never 'W' or, from before streams had a header, a byte of 0x10 or less.
+    public static final int BLOCK_MAGIC = 0x4C5A5742;
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    // Size of the buffers between the container and the underlying streams.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int blockSize;
+    private final boolean indexed;
+    private final ForkJoinPool pool;
+    // How many blocks may be read ahead of the one currently being written.
+    private final int maxInFlight;
+    // Encoders and decoders keep their tables between blocks, one per worker thread.
+    private final ThreadLocal<LzwEncoder> encoders;
+    private final ThreadLocal<LzwDecoder> decoders;
+
+    /**
+     * Creates a block compressor with the default block size and dictionary that runs on the common pool.
+     */
+    public BlockCompressor()
+    {
+        this(DEFAULT_BLOCK_SIZE, LzwEncoder.DEFAULT_DICTIONARY, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a block compressor.
+     * @param blockSize The number of uncompressed bytes in each block.
+     * @param dictionary The name of the dictionary implementation, see {@link Dictionary#create}.
+     * @param pool The pool that compresses and expands the blocks.
+     */
+    public BlockCompressor(int blockSize, String dictionary, ForkJoinPool pool)
+    {
+        this(blockSize, dictionary, pool, false);
+    }
+
+    /**
+     * Creates a block compressor that optionally writes a block index for random access.
+     * @param blockSize The number of uncompressed bytes in each block.
+     * @param dictionary The name of the dictionary implementation, see {@link Dictionary#create}.
+     * @param pool The pool that compresses and expands the blocks.
+     * @param indexed Whether to write a block index after the container.
+     */
+    public BlockCompressor(int blockSize, String dictionary, ForkJoinPool pool, boolean indexed)
+    {
+        this(blockSize, dictionary, LzwFormat.DEFAULT_MAX_BITS, pool, indexed);
+    }
+
+    /**
+     * Creates a block compressor that optionally writes a block index for random access.
+     * @param blockSize The number of uncompressed bytes in each block.
+     * @param dictionary The name of the dictionary implementation, see {@link Dictionary#create}.
+     * @param maxBits The widest code each block may use, see {@link LzwEncoder#LzwEncoder(Dictionary, int)}.
+     * @param pool The pool that compresses and expands the blocks.
+     * @param indexed Whether to write a block index after the container.
+     */
+    public BlockCompressor(int blockSize, String dictionary, int maxBits, ForkJoinPool pool, boolean indexed)
+    {
+        this(blockSize, () -> new LzwEncoder(Dictionary.create(dictionary), maxBits), pool, indexed);
+    }
+
+    /**
+     * Creates a block compressor whose blocks are compressed by encoders from the given factory,
+     * so they can be set up with any dictionary, code width and policy. Each worker thread
+     * creates one encoder and reuses it for all of its blocks.
+     * @param blockSize The number of uncompressed bytes in each block.
+     * @param encoders Creates a new encoder each time it is called.
+     * @param pool The pool that compresses and expands the blocks.
+     * @param indexed Whether to write a block index after the container.
+     */
+    public BlockCompressor(int blockSize, Supplier<LzwEncoder> encoders, ForkJoinPool pool, boolean indexed)
+    {
+        this(blockSize, encoders, LzwDecoder::new, pool, indexed);
+    }
+
+    /**
+     * Creates a block compressor whose blocks are compressed and expanded by encoders and decoders
+     * from the given factories, for example decoders that know a preset dictionary.
+     * @param blockSize The number of uncompressed bytes in each block.
+     * @param encoders Creates a new encoder each time it is called.
+     * @param decoders Creates a new decoder each time it is called.
+     * @param pool The pool that compresses and expands the blocks.
+     * @param indexed Whether to write a block index after the container.
+     */
+    public BlockCompressor(int blockSize, Supplier<LzwEncoder> encoders, Supplier<LzwDecoder> decoders,
+                           ForkJoinPool pool, boolean indexed)
+    {
+        if (blockSize < 1) throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        // Fail now on a bad encoder setting rather than on a worker thread.
+        encoders.get();
+        this.blockSize = blockSize;
+        this.indexed = indexed;
+        this.pool = pool;
+        this.maxInFlight = 2 * pool.getParallelism();
+        this.encoders = ThreadLocal.withInitial(encoders);
+        this.decoders = ThreadLocal.withInitial(decoders);
+    }
+
+    /**
+     * Returns true if the stream starts with a block container. The stream must support
+     * mark and reset, and is left where it was.
+     * @param in The stream to check.
+     * @return whether the next bytes of the stream are BLOCK_MAGIC.
+     */
+    public static boolean isBlockContainer(BufferedInputStream in)
+    {
+        try
+        {
+            in.mark(4);
+            int magic = 0;
+            for (int i = 0; i < 4; i++)
+            {
+                int b = in.read();
+                if (b < 0)
+                {
+                    in.reset();
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            in.reset();
+            return magic == BLOCK_MAGIC;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compresses everything left in the input stream into a block container on the output stream.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream of bytes to compress.
+     * @param out The stream the container is written to.
+     */
+    public void compress(InputStream in, OutputStream out)
+    {
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        try
+        {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            data.writeInt(BLOCK_MAGIC);
+            data.writeInt(blockSize);
+            BlockIndex index = new BlockIndex();
+            // DataOutputStream.size() stops counting at 2 GB, so keep track of the offset ourselves.
+            long position = 2 * Integer.BYTES;
+
+            while (true)
+            {
+                byte[] raw = readBlock(in);
+                if (raw == null)
+                {
+                    break;
+                }
+                // Wait for the oldest block before reading further ahead.
+                if (pending.size() == maxInFlight)
+                {
+                    position = writeBlock(data, pending.poll().join(), index, position);
+                }
+                pending.add(pool.submit(() -> new Block(raw.length, encoders.get().encode(raw))));
+            }
+            while (!pending.isEmpty())
+            {
+                position = writeBlock(data, pending.poll().join(), index, position);
+            }
+            // An empty block marks the end of the container.
+            data.writeInt(0);
+            position += Integer.BYTES;
+            if (indexed)
+            {
+                index.write(data, position);
+            }
+            data.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            cancel(pending);
+        }
+    }
+
+    /**
+     * Expands a block container from the input stream and writes the original bytes to the output stream.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream holding the container.
+     * @param out The stream the expanded bytes are written to.
+     * @throws IllegalStateException if the input is not a block container or is corrupt.
+     */
+    public void expand(InputStream in, OutputStream out)
+    {
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        try
+        {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+            if (data.readInt() != BLOCK_MAGIC) throw new IllegalStateException("Not a block container");
+            int containerBlockSize = data.readInt();
+            if (containerBlockSize < 1) throw new IllegalStateException("Corrupt block container header");
+            // Lengths are checked against the block size before anything is allocated for them, so a corrupt
+            // entry can't ask for gigabytes.
+            long maxCompressedLength = LzwFormat.maxEncodedLength(containerBlockSize);
+
+            while (true)
+            {
+                int rawLength = data.readInt();
+                if (rawLength == 0)
+                {
+                    break;
+                }
+                int compressedLength = data.readInt();
+                if (rawLength < 0 || rawLength > containerBlockSize
+                        || compressedLength < 0 || compressedLength > maxCompressedLength)
+                {
+                    throw new IllegalStateException("Corrupt block table entry");
+                }
+                byte[] compressed = new byte[compressedLength];
+                data.readFully(compressed);
+
+                if (pending.size() == maxInFlight)
+                {
+                    out.write(pending.poll().join().data);
+                }
+                pending.add(pool.submit(() -> decodeBlock(rawLength, compressed)));
+            }
+            while (!pending.isEmpty())
+            {
+                out.write(pending.poll().join().data);
+            }
+            out.flush();
+        }
+        catch (EOFException e)
+        {
+            throw new IllegalStateException("Truncated block container", e);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            cancel(pending);
+        }
+    }
+
+    // Cancels the blocks still in flight after a failure, so they don't keep running on the pool, holding
+    // their buffers, for results nobody will read. Nothing is left once a container was finished.
+    private static void cancel(ArrayDeque<ForkJoinTask<Block>> pending)
+    {
+        for (ForkJoinTask<Block> task : pending)
+        {
+            task.cancel(true);
+        }
+        pending.clear();
+    }
+
+    // Decodes one block on the calling worker thread and checks that it has the length the table says.
+    private Block decodeBlock(int rawLength, byte[] compressed)
+    {
+        byte[] raw = decoders.get().decode(compressed);
+        if (raw.length != rawLength)
+        {
+            throw new IllegalStateException("Block expanded to " + raw.length + " bytes, expected " + rawLength);
+        }
+        return new Block(rawLength, raw);
+    }
+
+    // Reads up to blockSize bytes, returning null at the end of the input.
+    private byte[] readBlock(InputStream in) throws IOException
+    {
+        byte[] raw = in.readNBytes(blockSize);
+        return raw.length == 0 ? null : raw;
+    }
+
+    // Writes one block's table entry and data at the given container offset, records it in the index,
+    // and returns the offset just past it.
+    private static long writeBlock(DataOutputStream data, Block block, BlockIndex index, long position)
+            throws IOException
+    {
+        index.add(position, block.rawLength);
+        data.writeInt(block.rawLength);
+        data.writeInt(block.data.length);
+        data.write(block.data);
+        return position + 2 * Integer.BYTES + block.data.length;
+    }
+
+    // One block on its way through the pool: its uncompressed length, and its compressed or expanded bytes.
+    private static final class Block
+    {
+        final int rawLength;
+        final byte[] data;
+
+        Block(int rawLength, byte[] data)
+        {
+            this.rawLength = rawLength;
+            this.data = data;
+        }
+    }
+}
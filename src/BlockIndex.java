@@ -0,0 +1,149 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *  The {@code BlockIndex} class records where every block of a block container starts,
+ *  both in the uncompressed data and in the container itself, so a reader can find the
+ *  blocks covering any byte range without expanding anything before them.
+ *  <p>
+ *  It is written after the end of the container, followed by a footer holding the
+ *  container offset of the index and {@code INDEX_MAGIC}:
+ *  <pre>
+ *  int count, count x (long uncompressed offset, long container offset), long uncompressed size
+ *  long index offset, int INDEX_MAGIC
+ *  </pre>
+ *  Container offsets point at a block's table entry, and every block starts on a byte
+ *  boundary, so a byte offset is all that is needed to start decoding it.
+ */
+final class BlockIndex
+{
+    // "LZWI"
+    static final int INDEX_MAGIC = 0x4C5A5749;
+    static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private long[] rawOffsets = new long[16];
+    private long[] containerOffsets = new long[16];
+    private int count;
+    private long rawSize;
+
+    /**
+     * Adds the next block to the index.
+     * @param containerOffset The offset of the block's table entry in the container.
+     * @param rawLength The uncompressed length of the block.
+     */
+    void add(long containerOffset, int rawLength)
+    {
+        if (count == rawOffsets.length)
+        {
+            rawOffsets = Arrays.copyOf(rawOffsets, count * 2);
+            containerOffsets = Arrays.copyOf(containerOffsets, count * 2);
+        }
+        rawOffsets[count] = rawSize;
+        containerOffsets[count] = containerOffset;
+        count++;
+        rawSize += rawLength;
+    }
+
+    /**
+     * Writes the index and footer.
+     * @param data The stream the container is being written to.
+     * @param indexOffset The offset in the container that the index is written at.
+     */
+    void write(DataOutputStream data, long indexOffset) throws IOException
+    {
+        data.writeInt(count);
+        for (int i = 0; i < count; i++)
+        {
+            data.writeLong(rawOffsets[i]);
+            data.writeLong(containerOffsets[i]);
+        }
+        data.writeLong(rawSize);
+        data.writeLong(indexOffset);
+        data.writeInt(INDEX_MAGIC);
+    }
+
+    /**
+     * Reads an index that was written by write(), without its footer.
+     * @param bytes The bytes of the index.
+     * @return the index.
+     * @throws IllegalStateException if the index is corrupt.
+     */
+    static BlockIndex read(ByteBuffer bytes)
+    {
+        BlockIndex index = new BlockIndex();
+        int count = bytes.getInt();
+        if (count < 0 || bytes.remaining() != (long) count * 2 * Long.BYTES + Long.BYTES)
+        {
+            throw new IllegalStateException("Corrupt block index");
+        }
+        index.rawOffsets = new long[Math.max(count, 1)];
+        index.containerOffsets = new long[Math.max(count, 1)];
+        for (int i = 0; i < count; i++)
+        {
+            index.rawOffsets[i] = bytes.getLong();
+            index.containerOffsets[i] = bytes.getLong();
+        }
+        index.count = count;
+        index.rawSize = bytes.getLong();
+        return index;
+    }
+
+    /**
+     * Returns the number of blocks.
+     */
+    int count()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the total uncompressed size of all blocks.
+     */
+    long rawSize()
+    {
+        return rawSize;
+    }
+
+    /**
+     * Returns the uncompressed offset that block i starts at.
+     */
+    long rawOffset(int i)
+    {
+        return rawOffsets[i];
+    }
+
+    /**
+     * Returns the uncompressed length of block i.
+     */
+    int rawLength(int i)
+    {
+        return (int) ((i + 1 < count ? rawOffsets[i + 1] : rawSize) - rawOffsets[i]);
+    }
+
+    /**
+     * Returns the container offset of block i's table entry.
+     */
+    long containerOffset(int i)
+    {
+        return containerOffsets[i];
+    }
+
+    /**
+     * Returns the block that holds the given uncompressed offset, using binary search.
+     * @param rawOffset An offset between 0 and rawSize() - 1.
+     */
+    int blockAt(long rawOffset)
+    {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rawOffsets[mid] <= rawOffset) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+}
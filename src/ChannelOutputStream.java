@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  The {@code ChannelOutputStream} class writes to a channel through one large direct
+ *  {@link ByteBuffer}, so the channel gets a few big writes straight from native memory
+ *  instead of a system call and a temporary copy per small heap array.
+ */
+final class ChannelOutputStream extends OutputStream
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a stream that writes to the given channel, which it takes ownership of.
+     * @param channel The channel to write to.
+     */
+    ChannelOutputStream(WritableByteChannel channel)
+    {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Creates or truncates the file and opens a stream that writes to it.
+     * @param path The file to write.
+     * @return the stream.
+     */
+    static ChannelOutputStream create(Path path) throws IOException
+    {
+        return new ChannelOutputStream(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (!buffer.hasRemaining())
+        {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        while (len > 0)
+        {
+            if (!buffer.hasRemaining())
+            {
+                drain();
+            }
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.put(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    // Writes everything in the buffer to the channel.
+    private void drain() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            drain();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  The {@code ChunkRing} class hands chunks of bytes from one thread to another through a fixed ring
+ *  of reusable buffers, for the stages of a {@link PipelinedCompressor}. The producer claims the
+ *  next free buffer, fills it and publishes it. The consumer takes the oldest published buffer, uses
+ *  it and releases it. A producer that gets a whole ring ahead waits for the consumer, so memory
+ *  stays at the size of the ring however fast either side is, and nothing is allocated per chunk.
+ *  <p>
+ *  Either side can stop the ring, which wakes up the other side with a {@link Stopped} exception.
+ *  Only one producer and one consumer may use a ring.
+ */
+final class ChunkRing
+{
+    /**
+     * Thrown by a ring that was stopped, to whichever side was waiting on it or comes to it next.
+     */
+    static final class Stopped extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Stopped()
+        {
+            super("Pipeline stopped");
+        }
+    }
+
+    private final byte[][] buffers;
+    private final int[] lengths;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // The oldest published buffer, and how many buffers are published but not yet released.
+    private int head;
+    private int count;
+    private boolean closed;
+    private boolean stopped;
+
+    /**
+     * Creates a ring of depth buffers of chunkSize bytes each.
+     */
+    ChunkRing(int depth, int chunkSize)
+    {
+        buffers = new byte[depth][chunkSize];
+        lengths = new int[depth];
+    }
+
+    /**
+     * Returns the next free buffer for the producer to fill, waiting while every buffer is in use.
+     */
+    byte[] claim()
+    {
+        lock.lock();
+        try
+        {
+            while (count == buffers.length && !stopped)
+            {
+                await();
+            }
+            checkStopped();
+            return buffers[(head + count) % buffers.length];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands the claimed buffer, holding length bytes, to the consumer.
+     */
+    void publish(int length)
+    {
+        lock.lock();
+        try
+        {
+            checkStopped();
+            lengths[(head + count) % buffers.length] = length;
+            count++;
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells the consumer that nothing more will be published.
+     */
+    void close()
+    {
+        lock.lock();
+        try
+        {
+            closed = true;
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest published buffer, waiting while there is none, or null once the ring is closed and
+     * every buffer has been taken. The buffer stays the consumer's until it calls release().
+     */
+    byte[] take()
+    {
+        lock.lock();
+        try
+        {
+            while (count == 0 && !closed && !stopped)
+            {
+                await();
+            }
+            checkStopped();
+            return count == 0 ? null : buffers[head];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the buffer take() returned.
+     */
+    int length()
+    {
+        lock.lock();
+        try
+        {
+            return lengths[head];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the buffer take() returned back to the producer.
+     */
+    void release()
+    {
+        lock.lock();
+        try
+        {
+            head = (head + 1) % buffers.length;
+            count--;
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the ring, waking up both sides. Anything still in it is dropped.
+     */
+    void stop()
+    {
+        lock.lock();
+        try
+        {
+            stopped = true;
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void await()
+    {
+        try
+        {
+            changed.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            changed.signalAll();
+            throw new IllegalStateException("Interrupted while waiting on the pipeline", e);
+        }
+    }
+
+    private void checkStopped()
+    {
+        if (stopped) throw new Stopped();
+    }
+}
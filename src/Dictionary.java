@@ -0,0 +1,93 @@
+/**
+ * The {@code Dictionary} interface is the phrase table used by LZW compression.
+ * The compressor only ever asks two questions of it: "what is the longest phrase
+ * starting here, and what is its code?" and "add that phrase followed by one more
+ * byte under a new code". Implementations are free to answer those however is
+ * fastest for them, so they can be swapped at runtime and benchmarked against each other.
+ * <p>
+ * Words are sequences of bytes, and every byte value from 0 to 255 is a symbol in its
+ * own right, so arbitrary binary data is coded without any conversion to characters.
+ */
+public interface Dictionary {
+
+    int EMPTY = -1;
+
+    /**
+     * Inserts the given word-code pair. Every proper prefix of a word with more than one
+     * byte must already be in the dictionary.
+     * @param s The word to insert.
+     * @param code The code for the given word.
+     */
+    void insert(byte[] s, int code);
+
+    /**
+     * Finds the longest word in the dictionary that matches the bytes of s from index start
+     * up to (but not including) index end.
+     * The match is remembered so that matchLength() and extend() can use it afterwards.
+     * @param s The bytes to match against.
+     * @param start The starting index of the match.
+     * @param end The index one past the last byte that may be matched.
+     * @return the code of the longest matching word, or EMPTY if not even the first
+     * byte matches.
+     */
+    int match(byte[] s, int start, int end);
+
+    /**
+     * Returns the number of bytes matched by the last call to match().
+     * @return the length of the last match, or 0 if nothing matched.
+     */
+    int matchLength();
+
+    /**
+     * Inserts the word formed by the last match followed by c.
+     * @param c The byte that extends the last match.
+     * @param code The code for the new word.
+     */
+    void extend(byte c, int code);
+
+    /**
+     * Looks up the given word, returning the code associated with it.
+     * @param s The target word.
+     * @return the corresponding code, or EMPTY if the word is not present.
+     */
+    int lookup(byte[] s);
+
+    /**
+     * Removes every word from the dictionary.
+     */
+    void clear();
+
+    /**
+     * Returns true if this dictionary can remove single words with remove().
+     * @return whether remove() is supported.
+     */
+    default boolean canRemove() {
+        return false;
+    }
+
+    /**
+     * Removes the word made of the word with code prefix followed by c. The word must not be the
+     * prefix of any other word in the dictionary.
+     * @param prefix The code of the word without its last byte.
+     * @param c The last byte of the word.
+     * @throws UnsupportedOperationException if the dictionary can't remove words.
+     */
+    default void remove(int prefix, byte c) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't remove words");
+    }
+
+    /**
+     * Creates an empty dictionary of the named kind.
+     * @param name One of {@code tst}, {@code array} or {@code hash}.
+     * @return a new, empty dictionary.
+     * @throws IllegalArgumentException if the name is not recognized.
+     */
+    static Dictionary create(String name) {
+        switch (name) {
+            case "tst":   return new TST();
+            case "array": return new ArrayTST();
+            case "hash":  return new HashDictionary();
+            default: throw new IllegalArgumentException("Unknown dictionary: " + name);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ *  The {@code DictionaryPolicy} enum is what an {@link LzwEncoder} does once its dictionary
+ *  has used up every code.
+ */
+public enum DictionaryPolicy
+{
+    /**
+     * Keep coding with the dictionary as it is for the rest of the input. Works well when
+     * the whole input looks like its beginning.
+     */
+    FREEZE,
+
+    /**
+     * Keep an eye on how many bits each input byte costs, and when that gets noticeably
+     * worse than the best the full dictionary has managed, send a clear code and start a
+     * new dictionary. Works well on long inputs whose content changes along the way.
+     */
+    RESET,
+
+    /**
+     * Keep the number of codes fixed, and give each new phrase the code of the least recently
+     * used phrase that no other phrase is built on. The dictionary keeps adapting without ever
+     * starting over. Needs a dictionary that can remove words, such as {@code hash}.
+     */
+    LRU;
+
+    /**
+     * Returns the policy with the given name, ignoring case.
+     * @param name {@code freeze}, {@code reset} or {@code lru}.
+     * @throws IllegalArgumentException if there is no such policy.
+     */
+    public static DictionaryPolicy of(String name)
+    {
+        for (DictionaryPolicy policy : values())
+        {
+            if (policy.name().equalsIgnoreCase(name))
+            {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown dictionary policy: " + name);
+    }
+}
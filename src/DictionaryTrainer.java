@@ -0,0 +1,181 @@
+/******************************************************************************
+ *  Compilation:  javac DictionaryTrainer.java
+ *  Execution:    java DictionaryTrainer output.dict sample1 sample2 ...
+ *  Execution:    java -Dlzw.presetSize=8000 DictionaryTrainer output.dict sample...
+ *                (keep 8000 phrases instead of the default, which fits 12-bit codes)
+ *  Dependencies: PresetDictionary.java HashDictionary.java
+ *
+ *  Trains a preset dictionary on the sample files and writes it to output.dict,
+ *  for use with -Dlzw.preset=output.dict when compressing and expanding.
+ *
+ *  % java DictionaryTrainer events.dict samples/*.json
+ *  % java -Dlzw.preset=events.dict TextCompressor - < event.json > event.lzw
+ *  % java -Dlzw.preset=events.dict TextCompressor + < event.lzw
+ *
+ ******************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ *  The {@code DictionaryTrainer} class builds a {@link PresetDictionary} from sample inputs.
+ *  It runs LZW over each sample with room for every phrase it finds, counts how often each
+ *  phrase is used, and keeps the phrases that saved the most codes, together with any prefixes
+ *  they need.
+ */
+public class DictionaryTrainer
+{
+    // Fills 12-bit codes, which suits messages of a few kilobytes.
+    public static final int DEFAULT_SIZE = (1 << 12) - LzwFormat.FIRST_CODE;
+    private static final int MAX_CODES = 1 << LzwFormat.MAX_BITS;
+
+    private final HashDictionary dictionary = new HashDictionary();
+    private int[] prefixes = new int[1 << 12];
+    private byte[] lastBytes = new byte[1 << 12];
+    private int[] lengths = new int[1 << 12];
+    private long[] uses = new long[1 << 12];
+    private int nextCode = LzwFormat.FIRST_CODE;
+
+    public DictionaryTrainer()
+    {
+        byte[] word = new byte[1];
+        for (int i = 0; i < LzwFormat.EXIT_CODE; i++)
+        {
+            word[0] = (byte) i;
+            dictionary.insert(word, i);
+            lengths[i] = 1;
+        }
+    }
+
+    /**
+     * Learns the phrases of one sample. Each sample is coded from its own start, the way a
+     * message would be, but phrases learned from earlier samples are kept.
+     * @param sample The bytes of the sample.
+     */
+    public void add(byte[] sample)
+    {
+        int start = 0;
+        while (start < sample.length)
+        {
+            int code = dictionary.match(sample, start, sample.length);
+            int length = dictionary.matchLength();
+            uses[code]++;
+            if (start + length < sample.length && nextCode < MAX_CODES)
+            {
+                if (nextCode == prefixes.length) grow();
+                dictionary.extend(sample[start + length], nextCode);
+                prefixes[nextCode] = code;
+                lastBytes[nextCode] = sample[start + length];
+                lengths[nextCode] = length + 1;
+                nextCode++;
+            }
+            start += length;
+        }
+    }
+
+    /**
+     * Picks the phrases to keep. A phrase is worth the number of codes it saved, one fewer than its
+     * length each time it was used. Phrases are taken from the most to the least valuable, each with
+     * whichever of its prefixes aren't in yet, as long as they all fit.
+     * @param size The most phrases to keep.
+     * @return the preset dictionary.
+     */
+    public PresetDictionary build(int size)
+    {
+        if (size < 0 || size > MAX_CODES - LzwFormat.FIRST_CODE)
+        {
+            throw new IllegalArgumentException("Illegal preset size: " + size);
+        }
+        Integer[] candidates = new Integer[nextCode - LzwFormat.FIRST_CODE];
+        for (int i = 0; i < candidates.length; i++)
+        {
+            candidates[i] = LzwFormat.FIRST_CODE + i;
+        }
+        Arrays.sort(candidates, (a, b) -> Long.compare(value(b), value(a)));
+
+        boolean[] kept = new boolean[nextCode];
+        int count = 0;
+        int[] chain = new int[64];
+        for (int candidate : candidates)
+        {
+            if (count == size || value(candidate) == 0)
+            {
+                break;
+            }
+            // Collect the phrase and its missing prefixes, and only keep them if they all fit.
+            int missing = 0;
+            for (int code = candidate; code >= LzwFormat.FIRST_CODE && !kept[code]; code = prefixes[code])
+            {
+                if (missing == chain.length) chain = Arrays.copyOf(chain, chain.length * 2);
+                chain[missing++] = code;
+            }
+            if (count + missing <= size)
+            {
+                for (int i = 0; i < missing; i++)
+                {
+                    kept[chain[i]] = true;
+                }
+                count += missing;
+            }
+        }
+
+        // A prefix always has a lower code than the phrases built on it, so keeping the original
+        // order means every prefix is still numbered before its phrases.
+        int[] renumbered = new int[nextCode];
+        int[] presetPrefixes = new int[count];
+        byte[] presetLastBytes = new byte[count];
+        int i = 0;
+        for (int code = LzwFormat.FIRST_CODE; code < nextCode; code++)
+        {
+            if (!kept[code])
+            {
+                continue;
+            }
+            int prefix = prefixes[code];
+            presetPrefixes[i] = prefix < LzwFormat.EXIT_CODE ? prefix : renumbered[prefix];
+            presetLastBytes[i] = lastBytes[code];
+            renumbered[code] = LzwFormat.FIRST_CODE + i;
+            i++;
+        }
+        return new PresetDictionary(presetPrefixes, presetLastBytes);
+    }
+
+    private long value(int code)
+    {
+        return uses[code] * (lengths[code] - 1);
+    }
+
+    private void grow()
+    {
+        int capacity = Math.min(prefixes.length * 2, MAX_CODES);
+        prefixes = Arrays.copyOf(prefixes, capacity);
+        lastBytes = Arrays.copyOf(lastBytes, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        uses = Arrays.copyOf(uses, capacity);
+    }
+
+    /**
+     * Trains a preset dictionary on the sample files and writes it out.
+     *
+     * @param args the output file, then one or more sample files
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2) throw new IllegalArgumentException("Usage: java DictionaryTrainer output.dict sample...");
+        int size = Integer.getInteger("lzw.presetSize", DEFAULT_SIZE);
+        DictionaryTrainer trainer = new DictionaryTrainer();
+        for (int i = 1; i < args.length; i++)
+        {
+            trainer.add(Files.readAllBytes(Path.of(args[i])));
+        }
+        PresetDictionary preset = trainer.build(size);
+        try (OutputStream out = Files.newOutputStream(Path.of(args[0])))
+        {
+            preset.write(out);
+        }
+        System.err.printf("%d phrases, id %08x%n", preset.size(), preset.id());
+    }
+}
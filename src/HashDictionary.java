@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * The {@code HashDictionary} class is an LZW phrase table stored as an open-addressing
+ * hash table keyed on (prefix code, next byte). This matches what LZW actually
+ * needs to know, "does the phrase with code p extended by b exist?", so matching one
+ * more byte is a single probe into two primitive arrays and no phrase is ever
+ * stored whole.
+ * <p>
+ * Single-byte phrases are kept in a direct-indexed array of R roots.
+ */
+public class HashDictionary implements Dictionary {
+
+    // Number of symbols that can start or extend a phrase (extended ASCII).
+    private static final int R = 256;
+    private static final long NO_KEY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 13;
+
+    private final int[] roots = new int[R];
+    // Linear-probing table: keys[i] is (prefix code << 8 | unsigned byte), values[i] is the phrase's code.
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    // The code and length of the word found by the last call to match().
+    private int matchCode;
+    private int matchLength;
+
+    public HashDictionary() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary sized for the given number of multi-byte phrases.
+     * @param capacity The expected number of phrases.
+     */
+    public HashDictionary(int capacity) {
+        // Keep the load factor at or below one half.
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1;
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        mask = tableSize - 1;
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(roots, EMPTY);
+        Arrays.fill(keys, NO_KEY);
+        size = 0;
+        matchCode = EMPTY;
+        matchLength = 0;
+    }
+
+    @Override
+    public void insert(byte[] s, int code) {
+        int first = s[0] & 0xff;
+        if (s.length == 1) {
+            roots[first] = code;
+            return;
+        }
+        int prefix = roots[first];
+        for (int i = 1; i < s.length - 1 && prefix != EMPTY; i++) {
+            prefix = get(prefix, s[i]);
+        }
+        if (prefix == EMPTY) throw new IllegalArgumentException("Prefix of a " + s.length + "-byte word is not in the dictionary");
+        put(prefix, s[s.length - 1], code);
+    }
+
+    @Override
+    public int match(byte[] s, int start, int end) {
+        int code = roots[s[start] & 0xff];
+        matchCode = code;
+        matchLength = 0;
+        if (code == EMPTY) return EMPTY;
+
+        int i = start + 1;
+        while (i < end) {
+            int next = get(code, s[i]);
+            if (next == EMPTY) break;
+            code = next;
+            i++;
+        }
+        matchCode = code;
+        matchLength = i - start;
+        return code;
+    }
+
+    @Override
+    public int matchLength() {
+        return matchLength;
+    }
+
+    @Override
+    public void extend(byte c, int code) {
+        if (matchCode == EMPTY) throw new IllegalStateException("No match to extend");
+        put(matchCode, c, code);
+    }
+
+    @Override
+    public int lookup(byte[] s) {
+        int code = roots[s[0] & 0xff];
+        for (int i = 1; i < s.length && code != EMPTY; i++) {
+            code = get(code, s[i]);
+        }
+        return code;
+    }
+
+    @Override
+    public boolean canRemove() {
+        return true;
+    }
+
+    @Override
+    public void remove(int prefix, byte c) {
+        long key = key(prefix, c);
+        int i = hash(key);
+        while (keys[i] != key) {
+            if (keys[i] == NO_KEY) return;
+            i = (i + 1) & mask;
+        }
+        // Shift later keys of the same run back into the hole, so lookups never stop short at it.
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != NO_KEY; j = (j + 1) & mask) {
+            int home = hash(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = NO_KEY;
+        size--;
+    }
+
+    /**
+     * Returns the number of multi-byte phrases in the dictionary.
+     * @return the number of phrases stored in the hash table.
+     */
+    public int size() {
+        return size;
+    }
+
+    // Returns the code of the phrase prefix + c, or EMPTY if there is none.
+    private int get(int prefix, byte c) {
+        long key = key(prefix, c);
+        for (int i = hash(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return values[i];
+            if (k == NO_KEY) return EMPTY;
+        }
+    }
+
+    private void put(int prefix, byte c, int code) {
+        if (2 * (size + 1) > keys.length) resize();
+        long key = key(prefix, c);
+        int i = hash(key);
+        while (keys[i] != NO_KEY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == NO_KEY) size++;
+        keys[i] = key;
+        values[i] = code;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, NO_KEY);
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == NO_KEY) continue;
+            int i = hash(oldKeys[j]);
+            while (keys[i] != NO_KEY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static long key(int prefix, byte c) {
+        return ((long) prefix << 8) | (c & 0xff);
+    }
+
+    // Fibonacci hashing spreads consecutive codes across the table.
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ *  The {@code LruCodes} class picks the code to recycle once an LZW dictionary is full, for
+ *  the {@link DictionaryPolicy#LRU} policy. Only leaf phrases, ones that aren't the prefix of
+ *  any other phrase, can be recycled, because every longer phrase is built on its prefix's code.
+ *  <p>
+ *  Leaves are kept in a list from least to most recently used. A leaf counts as used when its
+ *  code is sent, when it is added, and when it loses its last child and becomes a leaf again.
+ *  The encoder and the decoder make exactly the same calls in the same order, so they always
+ *  recycle the same code without it ever being sent.
+ */
+final class LruCodes
+{
+    static final int NONE = -1;
+
+    // Codes below this are the single bytes and the reserved codes, which are never recycled.
+    private final int firstCode;
+    // The prefix code and last byte of each phrase, so the encoder can remove it from its dictionary.
+    private final int[] prefixes;
+    private final byte[] lastBytes;
+    // How many phrases have each code as their prefix.
+    private final int[] children;
+    // The leaf list, linked both ways through the codes themselves.
+    private final int[] older;
+    private final int[] newer;
+    private final boolean[] listed;
+    private int oldest = NONE;
+    private int newest = NONE;
+
+    /**
+     * Creates the bookkeeping for an empty dictionary.
+     * @param firstCode The first code that is handed out to a phrase.
+     * @param numCodes The number of codes the dictionary can hold.
+     */
+    LruCodes(int firstCode, int numCodes)
+    {
+        this.firstCode = firstCode;
+        prefixes = new int[numCodes];
+        lastBytes = new byte[numCodes];
+        children = new int[numCodes];
+        older = new int[numCodes];
+        newer = new int[numCodes];
+        listed = new boolean[numCodes];
+    }
+
+    /**
+     * Returns the first code that is handed out to a phrase.
+     */
+    int firstCode()
+    {
+        return firstCode;
+    }
+
+    /**
+     * Returns the number of codes the dictionary can hold.
+     */
+    int size()
+    {
+        return prefixes.length;
+    }
+
+    /**
+     * Forgets every phrase, for a new stream.
+     */
+    void clear()
+    {
+        Arrays.fill(children, 0);
+        Arrays.fill(listed, false);
+        oldest = NONE;
+        newest = NONE;
+    }
+
+    /**
+     * Marks a code as just sent.
+     */
+    void touch(int code)
+    {
+        if (code >= firstCode && listed[code])
+        {
+            unlink(code);
+            append(code);
+        }
+    }
+
+    /**
+     * Returns the least recently used leaf, which the next phrase extending prefix would replace,
+     * or NONE if the only leaf is prefix itself. Doesn't change anything.
+     */
+    int victim(int prefix)
+    {
+        return oldest == prefix ? NONE : oldest;
+    }
+
+    /**
+     * Returns true if the code currently holds a phrase, so adding under it recycles it.
+     */
+    boolean inUse(int code)
+    {
+        return listed[code] || children[code] > 0;
+    }
+
+    /**
+     * Returns the prefix code of the phrase under the given code.
+     */
+    int prefix(int code)
+    {
+        return prefixes[code];
+    }
+
+    /**
+     * Returns the last byte of the phrase under the given code.
+     */
+    byte lastByte(int code)
+    {
+        return lastBytes[code];
+    }
+
+    /**
+     * Records that the phrase of prefix followed by lastByte now has the given code, forgetting
+     * whatever phrase the code had before.
+     */
+    void add(int code, int prefix, byte lastByte)
+    {
+        if (inUse(code))
+        {
+            unlink(code);
+            removeChild(prefixes[code]);
+        }
+        prefixes[code] = prefix;
+        lastBytes[code] = lastByte;
+        children[code] = 0;
+        append(code);
+        if (prefix >= firstCode && children[prefix]++ == 0)
+        {
+            unlink(prefix);
+        }
+    }
+
+    // A prefix that loses its last child is a leaf again, and goes in as the most recently used one.
+    private void removeChild(int prefix)
+    {
+        if (prefix >= firstCode && --children[prefix] == 0)
+        {
+            append(prefix);
+        }
+    }
+
+    private void append(int code)
+    {
+        older[code] = newest;
+        newer[code] = NONE;
+        if (newest == NONE)
+        {
+            oldest = code;
+        }
+        else
+        {
+            newer[newest] = code;
+        }
+        newest = code;
+        listed[code] = true;
+    }
+
+    private void unlink(int code)
+    {
+        if (!listed[code])
+        {
+            return;
+        }
+        if (older[code] == NONE)
+        {
+            oldest = newer[code];
+        }
+        else
+        {
+            newer[older[code]] = newer[code];
+        }
+        if (newer[code] == NONE)
+        {
+            newest = older[code];
+        }
+        else
+        {
+            older[newer[code]] = older[code];
+        }
+        listed[code] = false;
+    }
+}
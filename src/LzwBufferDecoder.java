@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ *  The {@code LzwBufferDecoder} class expands a stream handed to it in {@link ByteBuffer}s as they
+ *  arrive, for servers that run an event loop and can't block on a stream. It works like a
+ *  {@link java.nio.charset.CharsetDecoder}: each call takes as much input as it needs, puts as
+ *  much output as fits, and keeps its place in the stream, even in the middle of a code, until
+ *  it is called again with more input or more room. Input is taken in blocks, possibly past the
+ *  end of the stream, so the stream must have its input to itself.
+ *  <p>
+ *  Output is handed over as soon as it is expanded, so a stream that turns out to be corrupt is
+ *  only reported when its checksum is read. Errors are reported as {@link IllegalStateException}.
+ *  <p>
+ *  A single decoder is not thread-safe.
+ */
+public class LzwBufferDecoder
+{
+    private final LzwDecoder decoder;
+    private final Input input = new Input();
+    // The header is collected here first, since the decoder reads it in one go.
+    private final byte[] header = new byte[LzwFormat.MAX_HEADER_BYTES];
+    private int headerCount;
+    private boolean started;
+    // Holds what was read from a channel but not yet expanded.
+    private ByteBuffer channelInput;
+
+    /**
+     * Creates a decoder for streams that don't use a preset dictionary.
+     */
+    public LzwBufferDecoder()
+    {
+        this(new LzwDecoder());
+    }
+
+    /**
+     * Creates a decoder that expands with the given decoder, which it takes over.
+     * @param decoder The decoder to expand with, for example one that knows a preset dictionary.
+     */
+    public LzwBufferDecoder(LzwDecoder decoder)
+    {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Expands as much of the stream as the input allows into out. Takes bytes from in until out is
+     * full or in is used up, and anything taken but not expanded yet is kept for the next call.
+     * @param in More of the compressed stream, which may be direct.
+     * @param out The buffer for the expanded bytes, which may be direct.
+     * @param endOfInput Whether in holds the last of the input.
+     * @return true once the whole stream has been expanded and checked, and all of it put in out.
+     * @throws IllegalStateException if the stream is corrupt, or if it is cut short at the end of the input.
+     */
+    public boolean decode(ByteBuffer in, ByteBuffer out, boolean endOfInput)
+    {
+        if (!started)
+        {
+            while (LzwFormat.headerLength(header, headerCount) < 0 && in.hasRemaining())
+            {
+                header[headerCount++] = in.get();
+            }
+            if (LzwFormat.headerLength(header, headerCount) < 0)
+            {
+                if (endOfInput) throw new IllegalStateException("Truncated LZW stream");
+                return false;
+            }
+            input.buffer = null;
+            decoder.start(input, true);
+            started = true;
+        }
+        input.buffer = in;
+        try
+        {
+            decoder.read(out);
+        }
+        finally
+        {
+            input.buffer = null;
+        }
+        boolean finished = decoder.finished();
+        // Output stops early only for want of input, so with room left over and no more input coming it never ends.
+        if (!finished && endOfInput && out.hasRemaining() && !in.hasRemaining())
+        {
+            throw new IllegalStateException("Truncated LZW stream");
+        }
+        return finished;
+    }
+
+    /**
+     * Reads whatever the channel has ready and expands as much as it allows into out, like
+     * {@link #decode(ByteBuffer, ByteBuffer, boolean)}. The end of the channel is the end of the input.
+     * @param in The channel to read, which may be non-blocking.
+     * @param out The buffer for the expanded bytes, which may be direct.
+     * @return true once the whole stream has been expanded and checked, and all of it put in out.
+     */
+    public boolean decode(ReadableByteChannel in, ByteBuffer out)
+    {
+        if (channelInput == null)
+        {
+            channelInput = ByteBuffer.allocateDirect(1 << 16).flip();
+        }
+        try
+        {
+            boolean endOfInput = false;
+            if (!channelInput.hasRemaining())
+            {
+                channelInput.clear();
+                endOfInput = in.read(channelInput) < 0;
+                channelInput.flip();
+            }
+            return decode(channelInput, out, endOfInput);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns true once the whole stream has been expanded and checked, and all of it handed over.
+     */
+    public boolean isFinished()
+    {
+        return started && decoder.finished();
+    }
+
+    // Gives the decoder the header bytes first, then whatever buffer decode() was called with, and nothing
+    // while there is none, which a resumable decoder takes as having to wait for more.
+    private final class Input extends InputStream
+    {
+        private ByteBuffer buffer;
+        private int headerPosition;
+
+        @Override
+        public int read()
+        {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (headerPosition < headerCount)
+            {
+                int count = Math.min(len, headerCount - headerPosition);
+                System.arraycopy(header, headerPosition, b, off, count);
+                headerPosition += count;
+                return count;
+            }
+            if (buffer == null || !buffer.hasRemaining())
+            {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ *  The {@code LzwBufferEncoder} class compresses input handed to it in {@link ByteBuffer}s or read
+ *  from a {@link ReadableByteChannel}, a piece at a time, for servers that run an event loop and
+ *  can't block on a stream. Input of any size can be given at any time. It is copied once, straight
+ *  into the encoder's window, and coded right away except for the last phrase, which more input
+ *  might still make longer.
+ *  <p>
+ *  The compressed bytes wait inside the encoder until they are drained into a buffer or a
+ *  {@link WritableByteChannel}, as much as it takes at a time. They come out a block at a time
+ *  while coding, and all of them after {@link #flush()} or {@link #finish()}. The encoder never
+ *  stops taking input, so a caller whose channel falls behind should stop feeding it once
+ *  {@link #pending()} gets large.
+ *  <p>
+ *  A single encoder is not thread-safe.
+ */
+public class LzwBufferEncoder
+{
+    private final LzwEncoder encoder;
+    private final Output output = new Output();
+    private boolean finished;
+
+    /**
+     * Creates an encoder with the default settings and starts its stream.
+     */
+    public LzwBufferEncoder()
+    {
+        this(new LzwEncoder());
+    }
+
+    /**
+     * Creates an encoder that compresses with the given encoder, which it takes over, and starts its stream.
+     * @param encoder The encoder to compress with, for example one with a preset dictionary.
+     */
+    public LzwBufferEncoder(LzwEncoder encoder)
+    {
+        this.encoder = encoder;
+        encoder.start(output, LzwFormat.UNKNOWN_LENGTH);
+    }
+
+    /**
+     * Codes all the remaining bytes of the buffer, which may be direct.
+     * @param in The bytes to compress. Its position ends up at its limit.
+     * @throws IllegalStateException if the stream is finished.
+     */
+    public void encode(ByteBuffer in)
+    {
+        checkOpen();
+        encoder.write(in);
+    }
+
+    /**
+     * Reads whatever the channel has ready straight into the encoder's window and codes it.
+     * @param in The channel to read, which may be non-blocking.
+     * @return the number of bytes read, possibly 0, or -1 at the end of the channel.
+     * @throws IllegalStateException if the stream is finished.
+     */
+    public int encode(ReadableByteChannel in)
+    {
+        checkOpen();
+        return encoder.write(in);
+    }
+
+    /**
+     * Codes everything given so far and marks a flush point, so that all of it can be expanded from
+     * the compressed bytes once they are drained. The dictionary is kept.
+     * @throws IllegalStateException if the stream is finished.
+     */
+    public void flush()
+    {
+        checkOpen();
+        encoder.flush();
+    }
+
+    /**
+     * Codes everything given so far and ends the stream. Does nothing if it is already finished.
+     */
+    public void finish()
+    {
+        if (!finished)
+        {
+            finished = true;
+            encoder.finish();
+        }
+    }
+
+    /**
+     * Returns the number of compressed bytes waiting to be drained.
+     */
+    public int pending()
+    {
+        return output.count - output.position;
+    }
+
+    /**
+     * Moves as many compressed bytes as fit into the buffer.
+     * @param out The buffer to fill, which may be direct.
+     * @return true if no compressed bytes are left waiting.
+     */
+    public boolean drain(ByteBuffer out)
+    {
+        int count = Math.min(out.remaining(), pending());
+        out.put(output.bytes, output.position, count);
+        output.taken(count);
+        return pending() == 0;
+    }
+
+    /**
+     * Writes as many compressed bytes as the channel takes, without copying them.
+     * @param out The channel to write, which may be non-blocking.
+     * @return true if no compressed bytes are left waiting.
+     */
+    public boolean drain(WritableByteChannel out)
+    {
+        try
+        {
+            while (pending() > 0)
+            {
+                int count = out.write(ByteBuffer.wrap(output.bytes, output.position, pending()));
+                if (count == 0)
+                {
+                    break;
+                }
+                output.taken(count);
+            }
+            return pending() == 0;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns true once the stream is finished and all of it has been drained.
+     */
+    public boolean isFinished()
+    {
+        return finished && pending() == 0;
+    }
+
+    private void checkOpen()
+    {
+        if (finished) throw new IllegalStateException("Stream finished");
+    }
+
+    // Holds the compressed bytes between position and count until they are drained.
+    private static final class Output extends OutputStream
+    {
+        private byte[] bytes = new byte[1 << 16];
+        private int position;
+        private int count;
+
+        @Override
+        public void write(int b)
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            // Move what is left to the front before growing, so the buffer only grows while the reader is behind.
+            if (count + len > bytes.length && position > 0)
+            {
+                System.arraycopy(bytes, position, bytes, 0, count - position);
+                count -= position;
+                position = 0;
+            }
+            if (count + len > bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + len));
+            }
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void taken(int taken)
+        {
+            position += taken;
+            if (position == count)
+            {
+                position = 0;
+                count = 0;
+            }
+        }
+    }
+}
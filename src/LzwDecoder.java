@@ -0,0 +1,706 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ *  The {@code LzwDecoder} class expands a stream of codes written by {@link LzwEncoder}.
+ *  Every decoder owns its own code table, so each call to {@code decode} starts
+ *  from a fresh table, and separate decoders can run at the same time on different
+ *  threads. A single decoder is not thread-safe.
+ *  <p>
+ *  The code width, the maximum width and whether the stream may contain clear codes are
+ *  taken from the stream's header, and streams from before the header existed are read
+ *  as fixed 12-bit codes, see {@link LzwFormat}. Streams coded with a {@link PresetDictionary}
+ *  can only be expanded by a decoder that was given that preset.
+ *  <p>
+ *  When {@code decode} is given a stream whose header records the original length, the whole
+ *  output is built in one array of exactly that size and written in a single call, once the
+ *  checksum after the exit code has matched. {@link LzwInputStream} and {@link LzwBufferDecoder}
+ *  take the output a buffer at a time instead. A stream that is truncated, too long or fails its checksum is rejected with
+ *  an {@link IllegalStateException}. At a flush point, see {@link LzwOutputStream}, everything
+ *  before it is handed over without waiting for more input.
+ *  <p>
+ *  Errors from the underlying streams are rethrown as {@link UncheckedIOException}.
+ */
+public class LzwDecoder
+{
+    // Stands for "no code", before the first code, after a clear code, and when nothing will be added.
+    // It is the same value LruCodes uses when it has nothing to recycle.
+    private static final int NO_CODE = LruCodes.NONE;
+    // Size of the buffer the output is written through when its length isn't known.
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    // The largest output that is built in memory in one piece. A longer recorded length goes through the
+    // buffer instead. Either way the buffer only grows as output arrives, so a corrupt header can't ask for
+    // an enormous array.
+    private static final long MAX_WHOLE_OUTPUT = 1 << 26;
+    // The largest output buffer kept for the next stream, the default block size, so block decoders keep
+    // reusing theirs. Anything bigger is let go once its stream is done, so idle decoders stay small.
+    private static final int MAX_RETAINED_OUTPUT = 1 << 20;
+
+    // Instead of storing every phrase as a String, each code only stores the code of its prefix,
+    // its last byte and its length. Memory is then O(numCodes) no matter how long the phrases get.
+    // The tables are sized for the widest stream seen so far and reused after that.
+    private int[] prefixCodes = new int[0];
+    private byte[] lastBytes = new byte[0];
+    private int[] lengths = new int[0];
+    // Phrases are rebuilt into this one reusable buffer, and no phrase can be longer than numCodes.
+    private byte[] phrase = new byte[0];
+    private int currentCodeToAdd;
+    // The first code handed out to a phrase, which depends on whether the stream reserves CLEAR_CODE.
+    private int firstCode;
+    // The code the phrase started by the previous code will be added under, or NO_CODE if there won't be one.
+    private int pendingCode;
+    // Mirrors the encoder's choice of code to recycle in streams with FLAG_LRU, null otherwise.
+    private LruCodes lru;
+    // The presets this decoder can load, picked by the id in a stream's header.
+    private final PresetDictionary[] presets;
+    // The first code after the preset's phrases, where the stream starts adding its own.
+    private int baseCode;
+    // The code width limits of the stream being decoded.
+    private int minBits;
+    private int maxBits;
+    private int numCodes;
+    // The stream being decoded, what its header says about it, and where decoding has got to.
+    private BinaryIn binaryIn;
+    private boolean checked;
+    private boolean flushable;
+    private long length;
+    private boolean stored;
+    private long storedRemaining;
+    private int previousCode;
+    // A code that was read but not acted on yet, or NO_CODE.
+    private int heldCode;
+    // Whether the end of the stream was read, and whether its checksum was checked too.
+    private boolean atEnd;
+    private boolean ended;
+    // A resumable decoder stops when its input runs out instead of calling the stream truncated, and says so here.
+    private boolean resumable;
+    private boolean starved;
+    // The output is built in this buffer. Bytes before outputPosition were handed out, outputWritten counts
+    // the bytes of earlier buffers, and the checksum covers everything up to outputCount.
+    private byte[] output = new byte[0];
+    // The recorded length when the whole output is built before any of it is handed out, otherwise -1.
+    private int wholeLength;
+    private int outputPosition;
+    private int outputCount;
+    private long outputWritten;
+    private final CRC32C checksum = new CRC32C();
+    // The part of the current phrase, from phraseOffset up to phraseLength, that didn't fit in the buffer yet.
+    private int phraseOffset;
+    private int phraseLength;
+
+    /**
+     * Creates a decoder for streams that don't use a preset dictionary.
+     */
+    public LzwDecoder()
+    {
+        this(new PresetDictionary[0]);
+    }
+
+    /**
+     * Creates a decoder that can also expand streams coded with any of the given presets.
+     * @param presets The preset dictionaries to recognize.
+     */
+    public LzwDecoder(PresetDictionary... presets)
+    {
+        this.presets = presets.clone();
+    }
+
+    /**
+     * Expands the given compressed bytes.
+     * @param data The compressed bytes.
+     * @return the original bytes.
+     */
+    public byte[] decode(byte[] data)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2 + 16);
+        decode(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Expands the input file into the output file. The input is memory-mapped and the output is
+     * written through a large direct buffer, so neither file passes through the heap as a whole.
+     * @param in The file to expand.
+     * @param out The file to write, which is created or truncated.
+     */
+    public void decode(Path in, Path out)
+    {
+        try (MappedInputStream input = new MappedInputStream(in);
+             ChannelOutputStream output = ChannelOutputStream.create(out))
+        {
+            decode(input, output);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads codes from the input stream up to and including the exit code, and writes the
+     * expanded bytes to the output stream. The output stream is flushed but neither stream is closed.
+     * @param in The stream of compressed bytes.
+     * @param out The stream the expanded bytes are written to.
+     * @throws IllegalStateException if the input contains a code that can't have been written yet, ends
+     * early, or doesn't match its recorded length or checksum.
+     */
+    public void decode(InputStream in, OutputStream out)
+    {
+        start(in, false, true);
+        try
+        {
+            int count;
+            while ((count = fill()) >= 0)
+            {
+                out.write(output, 0, count);
+            }
+            out.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts expanding a new stream: reads its header and sets up the tables. The output is then taken
+     * with read(), one buffer at a time whatever length the header records, so each stretch is handed out
+     * as soon as it is expanded. This is how {@link LzwInputStream} expands as it goes.
+     * @param in The stream of compressed bytes.
+     */
+    void start(InputStream in)
+    {
+        start(in, false, false);
+    }
+
+    /**
+     * Starts expanding a new stream like start(InputStream). A resumable decoder treats running out of input as
+     * having to wait for more, see {@link LzwBufferDecoder}, and its input must hold the whole header already.
+     */
+    void start(InputStream in, boolean resumable)
+    {
+        start(in, resumable, false);
+    }
+
+    // Starts a new stream. Only decode() builds the whole output before handing any of it out, since it writes
+    // it all in one go anyway. Readers that take the output as it comes get it a buffer at a time.
+    private void start(InputStream in, boolean resumable, boolean whole)
+    {
+        this.resumable = resumable;
+        binaryIn = new BinaryIn(in);
+        try
+        {
+            readHeader();
+        }
+        catch (NoSuchElementException e)
+        {
+            throw new IllegalStateException("Truncated LZW stream", e);
+        }
+
+        // Build the whole output in one array when its length is known, otherwise go through a buffer. The array
+        // starts no bigger than the buffer and grows as the output comes in, see fill().
+        wholeLength = whole && length != LzwFormat.UNKNOWN_LENGTH && length <= MAX_WHOLE_OUTPUT ? (int) length : -1;
+        int outputSize = wholeLength >= 0 ? Math.min(wholeLength, OUTPUT_BUFFER_SIZE) : OUTPUT_BUFFER_SIZE;
+        if (output.length > MAX_RETAINED_OUTPUT)
+        {
+            // Left over from a stream that failed part way through.
+            output = new byte[0];
+        }
+        if (output.length < outputSize)
+        {
+            output = new byte[outputSize];
+        }
+        outputPosition = 0;
+        outputCount = 0;
+        outputWritten = 0;
+        checksum.reset();
+        phraseOffset = 0;
+        phraseLength = 0;
+        previousCode = NO_CODE;
+        pendingCode = NO_CODE;
+        atEnd = false;
+        ended = false;
+        starved = false;
+    }
+
+    /**
+     * Copies up to len bytes of output into b, expanding more of the stream if there is nothing left over.
+     * Blocks only when no output is left until the next flush point.
+     * @return the number of bytes copied, or -1 at the end of the stream.
+     */
+    int read(byte[] b, int off, int len)
+    {
+        while (outputPosition == outputCount)
+        {
+            if (fill() < 0)
+            {
+                return -1;
+            }
+        }
+        int count = Math.min(len, outputCount - outputPosition);
+        System.arraycopy(output, outputPosition, b, off, count);
+        outputPosition += count;
+        return count;
+    }
+
+    /**
+     * Copies as much output into dst as fits, expanding as much more of the stream as the input allows. For a
+     * resumable decoder, which stops when its input runs out until there is more.
+     * @return the number of bytes copied, or -1 once the stream has ended and all of its output was handed out.
+     */
+    int read(ByteBuffer dst)
+    {
+        int total = 0;
+        while (dst.hasRemaining())
+        {
+            if (outputPosition == outputCount)
+            {
+                if (fill() < 0)
+                {
+                    return total > 0 ? total : -1;
+                }
+                if (outputCount == 0 && starved)
+                {
+                    break;
+                }
+            }
+            int count = Math.min(dst.remaining(), outputCount - outputPosition);
+            dst.put(output, outputPosition, count);
+            outputPosition += count;
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns true once the end of the stream has been read and checked and all of its output handed out.
+     */
+    boolean finished()
+    {
+        return ended && outputPosition == outputCount;
+    }
+
+    /**
+     * Returns the number of bytes of output that read() can hand out without expanding any more.
+     */
+    int available()
+    {
+        return outputCount - outputPosition;
+    }
+
+    // Reads the header, which also tells us how big the tables have to be, and sets them up.
+    private void readHeader()
+    {
+        int firstByte = binaryIn.readInt(8);
+        boolean lruMode = false;
+        PresetDictionary preset = null;
+        checked = false;
+        flushable = false;
+        stored = false;
+        length = LzwFormat.UNKNOWN_LENGTH;
+        heldCode = NO_CODE;
+        if (firstByte == LzwFormat.MAGIC >>> 8)
+        {
+            if (binaryIn.readInt(8) != (LzwFormat.MAGIC & 0xff))
+            {
+                throw new IllegalStateException("Not an LZW stream");
+            }
+            int widthByte = binaryIn.readInt(8);
+            // A byte too small to be a code width is the version of a stream with a length and checksum.
+            if ((widthByte & LzwFormat.BITS_MASK) < LzwFormat.MIN_BITS)
+            {
+                if (widthByte != LzwFormat.VERSION && widthByte != LzwFormat.VERSION_NO_FLUSH)
+                {
+                    throw new IllegalStateException("Unsupported LZW stream version: " + widthByte);
+                }
+                checked = true;
+                flushable = widthByte != LzwFormat.VERSION_NO_FLUSH;
+                widthByte = binaryIn.readInt(8);
+                if (widthByte == LzwFormat.STORED)
+                {
+                    length = readLength(binaryIn);
+                    if (length == LzwFormat.UNKNOWN_LENGTH)
+                    {
+                        throw new IllegalStateException("Stored LZW stream has no length");
+                    }
+                    stored = true;
+                    storedRemaining = length;
+                    return;
+                }
+            }
+            minBits = LzwFormat.MIN_BITS;
+            maxBits = widthByte & LzwFormat.BITS_MASK;
+            if (maxBits < LzwFormat.MIN_BITS || maxBits > LzwFormat.MAX_BITS
+                    || (widthByte & ~(LzwFormat.BITS_MASK | LzwFormat.FLAG_CLEAR | LzwFormat.FLAG_LRU | LzwFormat.FLAG_PRESET)) != 0)
+            {
+                throw new IllegalStateException("Unsupported code width: " + widthByte);
+            }
+            firstCode = (widthByte & LzwFormat.FLAG_CLEAR) != 0 ? LzwFormat.FIRST_CODE : LzwFormat.CLEAR_CODE;
+            lruMode = (widthByte & LzwFormat.FLAG_LRU) != 0;
+            if ((widthByte & LzwFormat.FLAG_PRESET) != 0)
+            {
+                preset = findPreset(binaryIn.readInt());
+                // Preset phrases are numbered from FIRST_CODE, after the reserved clear code.
+                if (firstCode != LzwFormat.FIRST_CODE || firstCode + preset.size() > 1 << maxBits)
+                {
+                    throw new IllegalStateException("Preset dictionary doesn't fit the stream's codes");
+                }
+            }
+            if (checked)
+            {
+                length = readLength(binaryIn);
+            }
+        }
+        else
+        {
+            // A legacy stream, the byte we just read is the top of the first code.
+            minBits = LzwFormat.LEGACY_BITS;
+            maxBits = LzwFormat.LEGACY_BITS;
+            firstCode = LzwFormat.CLEAR_CODE;
+            heldCode = (firstByte << (LzwFormat.LEGACY_BITS - 8)) | binaryIn.readInt(LzwFormat.LEGACY_BITS - 8);
+        }
+        numCodes = 1 << maxBits;
+        if (prefixCodes.length < numCodes)
+        {
+            prefixCodes = new int[numCodes];
+            lastBytes = new byte[numCodes];
+            lengths = new int[numCodes];
+            phrase = new byte[numCodes];
+        }
+
+        // Fill up the first EXIT_CODE number of slots with the single byte phrases, followed by the preset's
+        // phrases. These never change, so starting over after a clear code only has to forget the codes after them.
+        for (int i = 0; i < LzwFormat.EXIT_CODE; i++)
+        {
+            lastBytes[i] = (byte) i;
+            lengths[i] = 1;
+        }
+        baseCode = firstCode;
+        if (preset != null)
+        {
+            for (int i = 0; i < preset.size(); i++)
+            {
+                prefixCodes[baseCode] = preset.prefix(i);
+                lastBytes[baseCode] = preset.lastByte(i);
+                lengths[baseCode] = lengths[preset.prefix(i)] + 1;
+                baseCode++;
+            }
+        }
+        currentCodeToAdd = baseCode;
+        if (!lruMode)
+        {
+            lru = null;
+        }
+        else if (lru == null || lru.size() != numCodes || lru.firstCode() != baseCode)
+        {
+            lru = new LruCodes(baseCode, numCodes);
+        }
+        else
+        {
+            lru.clear();
+        }
+    }
+
+    // Replaces what is in the output buffer with the next stretch of output, which ends when the buffer is full,
+    // at a flush point or at the end of the stream. The stream's length and checksum are checked before its last
+    // stretch is handed out. Returns the number of bytes in the buffer, or -1 once the stream has ended.
+    private int fill()
+    {
+        if (ended)
+        {
+            // Everything was handed out, so a big buffer can go.
+            if (output.length > MAX_RETAINED_OUTPUT)
+            {
+                output = new byte[0];
+                outputPosition = 0;
+                outputCount = 0;
+            }
+            return -1;
+        }
+        outputWritten += outputCount;
+        outputPosition = 0;
+        outputCount = 0;
+        starved = false;
+        try
+        {
+            if (!atEnd)
+            {
+                atEnd = !(stored ? copyStored() : decodeCodes());
+                // Building the whole output, keep going in a bigger array until it is all there.
+                while (!atEnd && outputCount < wholeLength && outputFull())
+                {
+                    output = Arrays.copyOf(output, (int) Math.min(4L * output.length, wholeLength));
+                    atEnd = !(stored ? copyStored() : decodeCodes());
+                }
+                checksum.update(output, 0, outputCount);
+            }
+            if (atEnd)
+            {
+                if (resumable && checked && !binaryIn.hasBits(32))
+                {
+                    starved = true;
+                }
+                else
+                {
+                    verify();
+                }
+            }
+        }
+        catch (NoSuchElementException e)
+        {
+            throw new IllegalStateException("Truncated LZW stream", e);
+        }
+        return outputCount;
+    }
+
+    // Returns true if decoding last stopped only because the output buffer was full, rather than at a flush point
+    // or for want of input.
+    private boolean outputFull()
+    {
+        return outputCount == output.length && (stored ? !starved : phraseOffset < phraseLength);
+    }
+
+    // Decodes codes into the output buffer. Returns true if it stopped because the buffer is full, at a flush
+    // point or for want of input, and false at the exit code that ends the stream.
+    private boolean decodeCodes()
+    {
+        // First the rest of a phrase that didn't fit last time.
+        if (!copyPhrase())
+        {
+            return true;
+        }
+        while (true)
+        {
+            if (heldCode == NO_CODE)
+            {
+                if (resumable && !binaryIn.hasBits(codeWidth()))
+                {
+                    starved = true;
+                    return true;
+                }
+                heldCode = binaryIn.readInt(codeWidth());
+            }
+            int currentCode = heldCode;
+            if (currentCode == LzwFormat.EXIT_CODE)
+            {
+                if (flushable && resumable && !binaryIn.hasBits(1))
+                {
+                    starved = true;
+                    return true;
+                }
+                heldCode = NO_CODE;
+                if (!flushable || !binaryIn.readBoolean())
+                {
+                    return false;
+                }
+                // A flush point. The encoder used up the code it would have added for the last phrase, and the
+                // next code starts fresh, like after a clear code but with the same dictionary.
+                if (pendingCode == currentCodeToAdd)
+                {
+                    currentCodeToAdd++;
+                }
+                previousCode = NO_CODE;
+                pendingCode = NO_CODE;
+                binaryIn.skipToByte();
+                return true;
+            }
+            if (currentCode == LzwFormat.CLEAR_CODE && firstCode == LzwFormat.FIRST_CODE)
+            {
+                // Start over, the next code is a single byte again.
+                currentCodeToAdd = baseCode;
+                if (lru != null)
+                {
+                    lru.clear();
+                }
+                previousCode = NO_CODE;
+                pendingCode = NO_CODE;
+                heldCode = NO_CODE;
+                continue;
+            }
+            heldCode = NO_CODE;
+
+            if (previousCode == NO_CODE)
+            {
+                // The first code, or the first after a clear code or flush point, is always a single byte and
+                // adds nothing.
+                phraseLength = decodePhrase(currentCode);
+            }
+            // Each code after the first adds a new code for the previous phrase + the first byte of this phrase.
+            else if (currentCode != pendingCode)
+            {
+                phraseLength = decodePhrase(currentCode);
+                addCode(previousCode, phrase[0]);
+            }
+            else
+            {
+                // Edge case where the code isn't in the table yet. It can only be the code we are about to add,
+                // which is the previous phrase + its own first byte. The buffer still holds the previous phrase.
+                addCode(previousCode, phrase[0]);
+                phraseLength = decodePhrase(currentCode);
+            }
+            if (length != LzwFormat.UNKNOWN_LENGTH && outputWritten + outputCount + phraseLength > length)
+            {
+                throw new IllegalStateException("LZW stream is longer than its recorded length of " + length);
+            }
+
+            previousCode = currentCode;
+            if (lru != null)
+            {
+                lru.touch(previousCode);
+            }
+            pendingCode = nextCode(previousCode);
+
+            // Write out the bytes of the current phrase.
+            phraseOffset = 0;
+            if (!copyPhrase())
+            {
+                return true;
+            }
+        }
+    }
+
+    // Copies as much of the current phrase into the output buffer as fits, returning true once all of it has been.
+    private boolean copyPhrase()
+    {
+        int count = Math.min(phraseLength - phraseOffset, output.length - outputCount);
+        System.arraycopy(phrase, phraseOffset, output, outputCount, count);
+        phraseOffset += count;
+        outputCount += count;
+        return phraseOffset == phraseLength;
+    }
+
+    // Copies the bytes of a stored stream straight into the output buffer. Returns true if there are more
+    // than fit, and false once they have all been copied.
+    private boolean copyStored()
+    {
+        while (outputCount < output.length && storedRemaining > 0)
+        {
+            int count = binaryIn.read(output, outputCount, (int) Math.min(output.length - outputCount, storedRemaining));
+            if (count < 0)
+            {
+                if (resumable)
+                {
+                    starved = true;
+                    return true;
+                }
+                throw new IllegalStateException("Truncated LZW stream");
+            }
+            outputCount += count;
+            storedRemaining -= count;
+        }
+        return storedRemaining > 0;
+    }
+
+    // Checks the stream's length and checksum once its end has been read.
+    private void verify()
+    {
+        ended = true;
+        if (!checked)
+        {
+            return;
+        }
+        if (length != LzwFormat.UNKNOWN_LENGTH && outputWritten + outputCount != length)
+        {
+            throw new IllegalStateException("LZW stream is shorter than its recorded length of " + length);
+        }
+        if (binaryIn.readInt() != (int) checksum.getValue())
+        {
+            throw new IllegalStateException("LZW stream fails its checksum");
+        }
+    }
+
+    // Reads the length written by LzwEncoder, 7 bits at a time with the top bit set on all but the last byte.
+    private static long readLength(BinaryIn binaryIn)
+    {
+        long value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = binaryIn.readInt(8);
+            if (shift > 56 || (shift == 56 && b > 0x7F))
+            {
+                throw new IllegalStateException("Corrupt LZW stream length");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80)
+            {
+                return value - 1;
+            }
+        }
+    }
+
+    // Adds the phrase of prefixCode followed by lastByte under the pending code, if there is one.
+    private void addCode(int prefixCode, byte lastByte)
+    {
+        if (pendingCode == NO_CODE)
+        {
+            return;
+        }
+        prefixCodes[pendingCode] = prefixCode;
+        lastBytes[pendingCode] = lastByte;
+        lengths[pendingCode] = lengths[prefixCode] + 1;
+        if (lru != null)
+        {
+            lru.add(pendingCode, prefixCode, lastByte);
+        }
+        if (pendingCode == currentCodeToAdd)
+        {
+            currentCodeToAdd++;
+        }
+    }
+
+    // Returns the code that the phrase started by prefixCode will be added under: the next new code while
+    // there are any left, then the encoder's choice of code to recycle under the LRU policy, or NO_CODE.
+    // The encoder makes the same choice right after sending prefixCode, before it knows the next byte.
+    private int nextCode(int prefixCode)
+    {
+        if (currentCodeToAdd < numCodes)
+        {
+            return currentCodeToAdd;
+        }
+        return lru != null ? lru.victim(prefixCode) : NO_CODE;
+    }
+
+    // Wide enough for every code handed out so far and the pending one, which the encoder may already be using.
+    private int codeWidth()
+    {
+        return Math.max(minBits, LzwFormat.bitsFor(Math.max(currentCodeToAdd - 1, pendingCode)));
+    }
+
+    private PresetDictionary findPreset(int id)
+    {
+        for (PresetDictionary preset : presets)
+        {
+            if (preset.id() == id)
+            {
+                return preset;
+            }
+        }
+        throw new IllegalStateException(String.format("Stream needs preset dictionary %08x", id));
+    }
+
+    // Rebuilds the phrase for code into the start of the phrase buffer by following prefix codes back to
+    // a single byte, filling it from the end. Returns the length of the phrase.
+    private int decodePhrase(int code)
+    {
+        if (code >= currentCodeToAdd || (code >= LzwFormat.EXIT_CODE && code < firstCode))
+        {
+            throw new IllegalStateException("Invalid code in compressed input: " + code);
+        }
+        int length = lengths[code];
+        for (int i = length - 1; i >= 0; i--)
+        {
+            phrase[i] = lastBytes[code];
+            code = prefixCodes[code];
+        }
+        return length;
+    }
+}
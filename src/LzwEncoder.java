@@ -0,0 +1,638 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ *  The {@code LzwEncoder} class compresses a stream of bytes with LZW.
+ *  Every encoder owns its own dictionary and window, so each call to
+ *  {@code encode} starts from a fresh dictionary, and separate encoders can
+ *  run at the same time on different threads. A single encoder is not thread-safe.
+ *  <p>
+ *  Codes start out 9 bits wide and widen as the dictionary grows, up to the maximum
+ *  width the encoder was created with, see {@link LzwFormat}. What happens after that
+ *  is up to the encoder's {@link DictionaryPolicy}. The header records the length of the
+ *  input when it is known, and a CRC32C of the input follows the exit code.
+ *  <p>
+ *  Data given as an array or a file is stored as it is when it looks already compressed. An array
+ *  is also stored when coding it turns out not to make it any smaller. Data read from a stream is
+ *  always coded, since the header has to be written before most of it is seen.
+ *  <p>
+ *  Errors from the underlying streams are rethrown as {@link UncheckedIOException}.
+ */
+public class LzwEncoder
+{
+    // The dictionary implementation used when none is given.
+    public static final String DEFAULT_DICTIONARY = "array";
+    public static final DictionaryPolicy DEFAULT_POLICY = DictionaryPolicy.RESET;
+    // Size of the window the input is streamed through.
+    private static final int WINDOW_SIZE = 1 << 16;
+    // Once the dictionary is full, the RESET policy checks the cost per input byte this often.
+    private static final int RESET_CHECK_BYTES = 1 << 15;
+    // How much worse than the best stretch so far a stretch may be before the dictionary is reset.
+    private static final double RESET_TOLERANCE = 1.1;
+    // Data whose bytes are spread this evenly, in bits per byte, looks already compressed and is stored without
+    // trying LZW. Text is around 4.5 to 5.5, compressed or random data is within a hair of 8.
+    private static final double STORE_ENTROPY = 7.9;
+    // That guess is made from this many spans of SAMPLE_SPAN bytes spread evenly through the data.
+    private static final int SAMPLE_SPANS = 8;
+    private static final int SAMPLE_SPAN = 1 << 11;
+
+    private final Dictionary dictionary;
+    private final int maxBits;
+    // The dictionary stops growing once it has 2^maxBits codes.
+    private final int numCodes;
+    private final DictionaryPolicy policy;
+    // Phrases loaded before coding starts, or null.
+    private final PresetDictionary preset;
+    // Picks the code to recycle under the LRU policy, null otherwise.
+    private LruCodes lru;
+    private int currentCodeToAdd;
+    // Only use indices to shift the part of the window we are looking at, faster than copying.
+    private byte[] window = new byte[WINDOW_SIZE];
+    private int start;
+    private int end;
+    // Where the codes go, while a stream is being written.
+    private BinaryOut binaryOut;
+    // Checksum and count of the input so far, and the count the header promised.
+    private final CRC32C checksum = new CRC32C();
+    private long inputLength;
+    private long declaredLength;
+    // Input bytes and output bits since the last check of the RESET policy, and the fewest bits per byte
+    // any of the checks since the dictionary filled up has seen.
+    private int stretchBytes;
+    private long stretchBits;
+    private double bestBitsPerByte;
+
+    /**
+     * Creates an encoder that uses the default dictionary implementation.
+     */
+    public LzwEncoder()
+    {
+        this(Dictionary.create(DEFAULT_DICTIONARY));
+    }
+
+    /**
+     * Creates an encoder that uses the given dictionary, which it takes ownership of.
+     * @param dictionary The dictionary to build phrases in.
+     */
+    public LzwEncoder(Dictionary dictionary)
+    {
+        this(dictionary, LzwFormat.DEFAULT_MAX_BITS);
+    }
+
+    /**
+     * Creates an encoder that uses the given dictionary and lets codes grow up to maxBits wide.
+     * @param dictionary The dictionary to build phrases in.
+     * @param maxBits The widest code to write, from 9 to 20 bits.
+     */
+    public LzwEncoder(Dictionary dictionary, int maxBits)
+    {
+        this(dictionary, maxBits, DEFAULT_POLICY);
+    }
+
+    /**
+     * Creates an encoder that uses the given dictionary, lets codes grow up to maxBits wide,
+     * and follows the given policy once every code is used.
+     * @param dictionary The dictionary to build phrases in.
+     * @param maxBits The widest code to write, from 9 to 20 bits.
+     * @param policy What to do once the dictionary is full.
+     * @throws IllegalArgumentException if the policy is LRU and the dictionary can't remove words.
+     */
+    public LzwEncoder(Dictionary dictionary, int maxBits, DictionaryPolicy policy)
+    {
+        this(dictionary, maxBits, policy, null);
+    }
+
+    /**
+     * Creates an encoder like {@link #LzwEncoder(Dictionary, int, DictionaryPolicy)} that loads the
+     * phrases of a preset dictionary before coding, and again after every reset. The preset's phrases
+     * are never recycled by the LRU policy.
+     * @param dictionary The dictionary to build phrases in.
+     * @param maxBits The widest code to write, from 9 to 20 bits.
+     * @param policy What to do once the dictionary is full.
+     * @param preset The phrases to start with, or null to start from the single bytes.
+     * @throws IllegalArgumentException if the preset doesn't fit in maxBits, or if the policy is LRU
+     * and the dictionary can't remove words.
+     */
+    public LzwEncoder(Dictionary dictionary, int maxBits, DictionaryPolicy policy, PresetDictionary preset)
+    {
+        if (preset != null && LzwFormat.FIRST_CODE + preset.size() > 1 << LzwFormat.checkMaxBits(maxBits))
+        {
+            throw new IllegalArgumentException("A preset of " + preset.size() + " phrases doesn't fit in " + maxBits + "-bit codes");
+        }
+        if (policy == DictionaryPolicy.LRU && !dictionary.canRemove())
+        {
+            throw new IllegalArgumentException("The LRU policy needs a dictionary that can remove words, such as hash");
+        }
+        this.dictionary = dictionary;
+        this.maxBits = LzwFormat.checkMaxBits(maxBits);
+        this.numCodes = 1 << maxBits;
+        this.policy = policy;
+        this.preset = preset;
+    }
+
+    /**
+     * Compresses the given bytes, or stores them as they are if LZW wouldn't make them any smaller.
+     * @param data The bytes to compress.
+     * @return the compressed bytes.
+     */
+    public byte[] encode(byte[] data)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        // Don't spend any time on data that looks like it is already compressed, and give up on the codes
+        // if they came out no smaller than the data.
+        if (!looksIncompressible(data))
+        {
+            encode(new ByteArrayInputStream(data), data.length, out);
+            if (out.size() < data.length)
+            {
+                return out.toByteArray();
+            }
+            out.reset();
+        }
+        store(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses the input file into the output file, or stores it as it is if it looks already compressed.
+     * The input is memory-mapped and the output is written through a large direct buffer, so neither file
+     * passes through the heap as a whole.
+     * @param in The file to compress.
+     * @param out The file to write, which is created or truncated.
+     * @throws IllegalArgumentException if the file changes size while it is read.
+     */
+    public void encode(Path in, Path out)
+    {
+        try (MappedInputStream input = new MappedInputStream(in);
+             ChannelOutputStream output = ChannelOutputStream.create(out))
+        {
+            long length = Files.size(in);
+            // The same guess as for an array, made from the same spans of the file before anything is written.
+            if (looksIncompressible(in, length))
+            {
+                store(input, length, output);
+            }
+            else
+            {
+                encode(input, length, output);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compresses everything left in the input stream and writes it to the output stream.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream of bytes to compress.
+     * @param out The stream the compressed bytes are written to.
+     */
+    public void encode(InputStream in, OutputStream out)
+    {
+        encode(in, LzwFormat.UNKNOWN_LENGTH, out);
+    }
+
+    /**
+     * Compresses everything left in the input stream, which holds exactly length bytes, and writes it
+     * to the output stream. The length goes in the header, so the decoder can allocate its output up front.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream of bytes to compress.
+     * @param length The number of bytes left in the input stream, or -1 if it isn't known.
+     * @param out The stream the compressed bytes are written to.
+     * @throws IllegalArgumentException if the input doesn't hold length bytes.
+     */
+    public void encode(InputStream in, long length, OutputStream out)
+    {
+        start(out, length);
+        // Instead of reading the entire input in at once, stream it through a fixed size window so memory
+        // stays the same no matter how big the input is.
+        int count;
+        while ((count = read(in)) >= 0)
+        {
+            accept(count);
+        }
+        finish();
+    }
+
+    /**
+     * Starts a new stream: writes the header and sets up a fresh dictionary. The input is then given to
+     * write(), and the stream is ended by finish(). This is how {@link LzwOutputStream} codes as it goes.
+     * @param out The stream the compressed bytes are written to.
+     * @param length The number of bytes that will be written, or -1 if it isn't known.
+     */
+    void start(OutputStream out, long length)
+    {
+        if (length < LzwFormat.UNKNOWN_LENGTH)
+        {
+            throw new IllegalArgumentException("Illegal input length: " + length);
+        }
+        binaryOut = new BinaryOut(out);
+        binaryOut.write(LzwFormat.MAGIC, 16);
+        binaryOut.write(LzwFormat.VERSION, 8);
+        int flags = LzwFormat.FLAG_CLEAR | (policy == DictionaryPolicy.LRU ? LzwFormat.FLAG_LRU : 0)
+                | (preset != null ? LzwFormat.FLAG_PRESET : 0);
+        binaryOut.write(maxBits | flags, 8);
+        if (preset != null)
+        {
+            binaryOut.write(preset.id());
+        }
+        writeLength(binaryOut, length);
+        declaredLength = length;
+        checksum.reset();
+        inputLength = 0;
+
+        // Call to helper method that initializes the dictionary with values from 0 to EXIT_CODE.
+        initializeDictionary();
+        start = 0;
+        end = 0;
+        stretchBytes = 0;
+        stretchBits = 0;
+        bestBitsPerByte = Double.MAX_VALUE;
+    }
+
+    /**
+     * Codes the given bytes, apart from the last phrase, which more input might still make longer.
+     */
+    void write(byte[] b, int off, int len)
+    {
+        while (len > 0)
+        {
+            makeRoom();
+            int chunk = Math.min(len, window.length - end);
+            System.arraycopy(b, off, window, end, chunk);
+            off += chunk;
+            len -= chunk;
+            accept(chunk);
+        }
+    }
+
+    /**
+     * Codes the remaining bytes of the buffer, which may be direct, like write(byte[], int, int).
+     */
+    void write(ByteBuffer src)
+    {
+        while (src.hasRemaining())
+        {
+            makeRoom();
+            int chunk = Math.min(src.remaining(), window.length - end);
+            src.get(window, end, chunk);
+            accept(chunk);
+        }
+    }
+
+    /**
+     * Reads whatever the channel has ready straight into the window and codes it, like write(byte[], int, int).
+     * @return the number of bytes read, possibly 0 for a non-blocking channel, or -1 at the end of the channel.
+     */
+    int write(ReadableByteChannel src)
+    {
+        makeRoom();
+        try
+        {
+            int count = src.read(ByteBuffer.wrap(window, end, window.length - end));
+            if (count > 0)
+            {
+                accept(count);
+            }
+            return count;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Takes the count bytes just put in the window after end as input, and codes what it can of them.
+    private void accept(int count)
+    {
+        checksum.update(window, end, count);
+        inputLength += count;
+        end += count;
+        code(false);
+    }
+
+    /**
+     * Codes everything written so far and marks a flush point, after which the decoder can expand all of it
+     * without waiting for more. The dictionary is kept. Flushes the output stream.
+     */
+    void flush()
+    {
+        code(true);
+        binaryOut.write(LzwFormat.EXIT_CODE, codeWidth());
+        binaryOut.write(true);
+        binaryOut.flush();
+    }
+
+    /**
+     * Codes everything written so far and ends the stream. Flushes the output stream.
+     * @throws IllegalArgumentException if the input wasn't the length given to start().
+     */
+    void finish()
+    {
+        code(true);
+        // Write out the exit code, and the checksum of everything that went in so the decoder can tell if
+        // what it rebuilt is right.
+        binaryOut.write(LzwFormat.EXIT_CODE, codeWidth());
+        binaryOut.write(false);
+        binaryOut.write((int) checksum.getValue());
+        binaryOut.flush();
+        binaryOut = null;
+
+        if (declaredLength != LzwFormat.UNKNOWN_LENGTH && declaredLength != inputLength)
+        {
+            throw new IllegalArgumentException("Input was " + inputLength + " bytes, not " + declaredLength);
+        }
+    }
+
+    // Writes a code for each longest match in the window. A match that runs into the end of the window might
+    // still get longer with more input, so it is left for next time unless all is set.
+    private void code(boolean all)
+    {
+        while (start < end)
+        {
+            // First, find the longest prefix and its code in one walk of the dictionary.
+            int codeToWrite = dictionary.match(window, start, end);
+            int prefixLength = dictionary.matchLength();
+            if (start + prefixLength == end && !all)
+            {
+                return;
+            }
+
+            // Write out the code, just wide enough for every code handed out so far.
+            int width = codeWidth();
+            binaryOut.write(codeToWrite, width);
+            if (lru != null)
+            {
+                lru.touch(codeToWrite);
+            }
+
+            // Second, add a new code for the prefix + next byte if it won't overflow the max number of codes.
+            // The new entry hangs directly off the node we just matched. At the end of the input or a flush point
+            // there is no next byte, but the code is still used up so that the width of the next code matches the decoder.
+            if (currentCodeToAdd < numCodes)
+            {
+                if (start + prefixLength < end)
+                {
+                    addPhrase(currentCodeToAdd, codeToWrite, window[start + prefixLength]);
+                }
+                currentCodeToAdd++;
+            }
+            // Under the LRU policy a full dictionary recycles the code of its least recently used leaf phrase.
+            else if (lru != null && start + prefixLength < end)
+            {
+                int victim = lru.victim(codeToWrite);
+                if (victim != LruCodes.NONE)
+                {
+                    dictionary.remove(lru.prefix(victim), lru.lastByte(victim));
+                    addPhrase(victim, codeToWrite, window[start + prefixLength]);
+                }
+            }
+
+            // Move start forward by the prefix length.
+            start += prefixLength;
+
+            // Once the dictionary is full, start over if the last stretch of input cost noticeably more per byte
+            // than the best one so far, since the dictionary no longer fits what the input looks like.
+            if (policy == DictionaryPolicy.RESET && currentCodeToAdd == numCodes)
+            {
+                stretchBytes += prefixLength;
+                stretchBits += width;
+                if (stretchBytes >= RESET_CHECK_BYTES)
+                {
+                    double bitsPerByte = (double) stretchBits / stretchBytes;
+                    if (bitsPerByte > bestBitsPerByte * RESET_TOLERANCE)
+                    {
+                        binaryOut.write(LzwFormat.CLEAR_CODE, codeWidth());
+                        initializeDictionary();
+                        bestBitsPerByte = Double.MAX_VALUE;
+                    }
+                    else
+                    {
+                        bestBitsPerByte = Math.min(bestBitsPerByte, bitsPerByte);
+                    }
+                    stretchBytes = 0;
+                    stretchBits = 0;
+                }
+            }
+        }
+    }
+
+    // Moves the bytes still to be coded to the front of the window, and makes the window bigger if they fill it,
+    // which only happens when a single match is as long as the window.
+    private void makeRoom()
+    {
+        if (start > 0)
+        {
+            System.arraycopy(window, start, window, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == window.length)
+        {
+            window = Arrays.copyOf(window, window.length * 2);
+        }
+    }
+
+
+    // Writes the data as a stored stream, which the decoder copies straight through.
+    private static void store(byte[] data, OutputStream out)
+    {
+        BinaryOut binaryOut = storedHeader(out, data.length);
+        binaryOut.write(data, 0, data.length);
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        binaryOut.write((int) crc.getValue());
+        binaryOut.flush();
+    }
+
+    // Writes the length bytes left in the input as a stored stream, a window at a time.
+    private static void store(InputStream in, long length, OutputStream out) throws IOException
+    {
+        BinaryOut binaryOut = storedHeader(out, length);
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[WINDOW_SIZE];
+        long stored = 0;
+        int count;
+        while ((count = in.read(buffer)) >= 0)
+        {
+            binaryOut.write(buffer, 0, count);
+            crc.update(buffer, 0, count);
+            stored += count;
+        }
+        binaryOut.write((int) crc.getValue());
+        binaryOut.flush();
+        if (stored != length)
+        {
+            throw new IllegalArgumentException("Input was " + stored + " bytes, not " + length);
+        }
+    }
+
+    private static BinaryOut storedHeader(OutputStream out, long length)
+    {
+        BinaryOut binaryOut = new BinaryOut(out);
+        binaryOut.write(LzwFormat.MAGIC, 16);
+        binaryOut.write(LzwFormat.VERSION, 8);
+        binaryOut.write(LzwFormat.STORED, 8);
+        writeLength(binaryOut, length);
+        return binaryOut;
+    }
+
+    // Estimates the order-0 entropy of the data from a sample, and returns true if it is so close to 8 bits
+    // per byte that LZW can't be expected to find anything to shrink.
+    private static boolean looksIncompressible(byte[] data)
+    {
+        int[] counts = new int[256];
+        int sampled = 0;
+        int stride = data.length / SAMPLE_SPANS;
+        for (int span = 0; span < SAMPLE_SPANS; span++)
+        {
+            int from = span * stride;
+            int to = Math.min(from + SAMPLE_SPAN, data.length);
+            for (int i = from; i < to; i++)
+            {
+                counts[data[i] & 0xff]++;
+            }
+            sampled += Math.max(to - from, 0);
+        }
+        return looksIncompressible(counts, sampled);
+    }
+
+    // The same guess for the first length bytes of a file, reading only the spans it samples.
+    private static boolean looksIncompressible(Path file, long length) throws IOException
+    {
+        int[] counts = new int[256];
+        int sampled = 0;
+        long stride = length / SAMPLE_SPANS;
+        ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SPAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            for (int span = 0; span < SAMPLE_SPANS; span++)
+            {
+                long from = span * stride;
+                buffer.clear().limit((int) Math.min(SAMPLE_SPAN, length - from));
+                while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0)
+                {
+                    // Positional reads may come back short, so keep going until the span is full or the file ends.
+                }
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < buffer.position(); i++)
+                {
+                    counts[bytes[i] & 0xff]++;
+                }
+                sampled += buffer.position();
+            }
+        }
+        return looksIncompressible(counts, sampled);
+    }
+
+    // Returns true if the byte counts of a sample are spread so evenly that the data looks already compressed.
+    private static boolean looksIncompressible(int[] counts, int sampled)
+    {
+        // Too small a sample can't show an even spread, and LZW is cheap on small inputs anyway.
+        if (sampled < SAMPLE_SPANS * SAMPLE_SPAN)
+        {
+            return false;
+        }
+        double bits = 0;
+        for (int count : counts)
+        {
+            if (count > 0)
+            {
+                double p = (double) count / sampled;
+                bits -= p * Math.log(p);
+            }
+        }
+        return bits / Math.log(2) > STORE_ENTROPY;
+    }
+
+    // Writes the input length plus one 7 bits at a time, low bits first, with the top bit set on every
+    // byte but the last. An unknown length is a single zero byte, and a short message only needs one or two.
+    private static void writeLength(BinaryOut binaryOut, long length)
+    {
+        long value = length + 1;
+        while (value >= 0x80)
+        {
+            binaryOut.write((int) (value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        binaryOut.write((int) value, 8);
+    }
+
+    // Adds the phrase just matched, whose code is prefix, followed by next, under the given code.
+    private void addPhrase(int code, int prefix, byte next)
+    {
+        dictionary.extend(next, code);
+        if (lru != null)
+        {
+            lru.add(code, prefix, next);
+        }
+    }
+
+    // The decoder is always one code behind, so the widest code it can be sent is the last one handed out.
+    private int codeWidth()
+    {
+        return LzwFormat.bitsFor(currentCodeToAdd - 1);
+    }
+
+    // Reads as many bytes as are available into the window after the ones still to be coded, returning -1 at
+    // the end of the input.
+    private int read(InputStream in)
+    {
+        makeRoom();
+        try
+        {
+            int count;
+            do
+            {
+                count = in.read(window, end, window.length - end);
+            } while (count == 0);
+            return count;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Clears the dictionary and fills it back up with values from 0 to EXIT_CODE, and the preset's phrases.
+    private void initializeDictionary()
+    {
+        dictionary.clear();
+        byte[] word = new byte[1];
+        for (int i = 0; i < LzwFormat.EXIT_CODE; i++)
+        {
+            word[0] = (byte) i;
+            dictionary.insert(word, i);
+        }
+        currentCodeToAdd = LzwFormat.FIRST_CODE;
+        if (preset != null)
+        {
+            for (int i = 0; i < preset.size(); i++)
+            {
+                dictionary.insert(preset.word(i), currentCodeToAdd++);
+            }
+        }
+        if (policy == DictionaryPolicy.LRU)
+        {
+            if (lru == null)
+            {
+                lru = new LruCodes(currentCodeToAdd, numCodes);
+            }
+            lru.clear();
+        }
+    }
+}
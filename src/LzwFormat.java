@@ -0,0 +1,152 @@
+/**
+ *  The {@code LzwFormat} class holds the constants that the LZW encoder and
+ *  decoder have to agree on to read each other's output.
+ *  <p>
+ *  A stream starts with the two bytes of {@code MAGIC}, the {@code VERSION} byte and one byte
+ *  giving the widest code it may use, with {@code FLAG_CLEAR} set if the stream reserves
+ *  {@code CLEAR_CODE}.
+ *  Codes start out {@code MIN_BITS} wide and the width grows by one each time the next
+ *  code to be handed out no longer fits, up to that maximum, after which the dictionary
+ *  stops growing. A clear code throws the dictionary away, and coding starts again from
+ *  the single bytes at {@code MIN_BITS}. With {@code FLAG_LRU} set, a full dictionary
+ *  instead gives each new phrase the code of the least recently used leaf phrase.
+ *  With {@code FLAG_PRESET} set, the id of a {@link PresetDictionary} follows, and its
+ *  phrases take the codes from {@code FIRST_CODE} on before coding starts. The header ends
+ *  with the length of the original data plus one, in 7-bit groups from the lowest, where
+ *  zero means the length wasn't known. The exit code is followed by one bit. A 1 marks a
+ *  flush point: the rest of the byte is padding, so everything before it can be expanded
+ *  right away, and coding goes on with the same dictionary. A 0 ends the stream, and the
+ *  32-bit CRC32C of the original data follows.
+ *  <p>
+ *  Data that LZW can't shrink is stored instead: the code width byte is {@code STORED}, and
+ *  the length, the bytes as they are and the checksum follow.
+ *  <p>
+ *  Streams from before the version byte have neither the length nor the checksum. Their
+ *  code width byte always holds at least {@code MIN_BITS}, so it can't be mistaken for a version.
+ *  Streams written before the header existed have no magic and use {@code LEGACY_BITS}
+ *  for every code. Their first byte is always 0x10 or less, so they can still be told apart.
+ */
+final class LzwFormat
+{
+    // "LZ". The first byte of a legacy stream is at most 0x10, so it can never start with this.
+    static final int MAGIC = 0x4C5A;
+    // The current layout, see above. Anything below MIN_BITS can't be a code width byte.
+    static final int VERSION = 3;
+    // The first layout with a version byte, which has no flush bit after the exit code.
+    static final int VERSION_NO_FLUSH = 2;
+    // Stands in for the length of the original data when it isn't known up front.
+    static final long UNKNOWN_LENGTH = -1;
+    // Codes 0 through 255 are the single bytes, and this code marks the end of the data.
+    static final int EXIT_CODE = 256;
+    // Tells the decoder to start over with a new dictionary.
+    static final int CLEAR_CODE = EXIT_CODE + 1;
+    // The first code that is handed out to a new phrase. Streams without FLAG_CLEAR start at CLEAR_CODE.
+    static final int FIRST_CODE = CLEAR_CODE + 1;
+    // Set in the code width byte of the header when the stream reserves CLEAR_CODE.
+    static final int FLAG_CLEAR = 0x80;
+    // Set in the code width byte of the header when full dictionaries recycle codes, see LruCodes.
+    static final int FLAG_LRU = 0x40;
+    // Set in the code width byte of the header when the stream starts from a PresetDictionary. The preset's
+    // 32-bit id follows the code width byte.
+    static final int FLAG_PRESET = 0x20;
+    // A code width byte of this means the data follows as is instead of as codes.
+    static final int STORED = 0;
+    // The part of the code width byte that holds the width.
+    static final int BITS_MASK = 0x1F;
+    // Every code to start with needs 9 bits, since EXIT_CODE does.
+    static final int MIN_BITS = 9;
+    // The widest code a stream may ask for, which keeps the decoder's tables to a few megabytes.
+    static final int MAX_BITS = 20;
+    static final int DEFAULT_MAX_BITS = 16;
+    // The longest header: magic, version, code width, preset id and a 64-bit length 7 bits at a time.
+    static final int MAX_HEADER_BYTES = 2 + 1 + 1 + 4 + 10;
+    // Every code in a stream without a header is this wide.
+    static final int LEGACY_BITS = 12;
+
+    // Don't instantiate.
+    private LzwFormat() { }
+
+    /**
+     * Returns the number of bits needed to write every code up to and including code.
+     */
+    static int bitsFor(int code)
+    {
+        return 32 - Integer.numberOfLeadingZeros(code);
+    }
+
+    /**
+     * Returns the number of bytes a decoder reads before the first code of the stream that starts with
+     * the first count bytes of b, counting the two bytes that hold a legacy stream's first code, or -1 if
+     * it needs more than count bytes to tell. Never more than MAX_HEADER_BYTES.
+     */
+    static int headerLength(byte[] b, int count)
+    {
+        if (count < 2)
+        {
+            return -1;
+        }
+        if ((b[0] & 0xff) != MAGIC >>> 8)
+        {
+            return 2;
+        }
+        if (count < 3)
+        {
+            return -1;
+        }
+        int i = 2;
+        boolean versioned = (b[i] & BITS_MASK) < MIN_BITS;
+        if (versioned)
+        {
+            if (++i == count)
+            {
+                return -1;
+            }
+        }
+        int widthByte = b[i++] & 0xff;
+        if (!versioned)
+        {
+            int length = (widthByte & FLAG_PRESET) != 0 ? i + 4 : i;
+            return length <= count ? length : -1;
+        }
+        if (widthByte != STORED && (widthByte & FLAG_PRESET) != 0)
+        {
+            i += 4;
+        }
+        // The length, whose last byte is the first one below 0x80.
+        for (int end = i + 10; i < end; i++)
+        {
+            if (i >= count)
+            {
+                return -1;
+            }
+            if ((b[i] & 0x80) == 0)
+            {
+                return i + 1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the most bytes an encoder can write for length bytes of data, for checking lengths read from
+     * untrusted input: every byte coded on its own at the widest width with a clear code after it, plus
+     * the header, the exit code and its end bit, and the checksum. Stored data is always shorter.
+     */
+    static long maxEncodedLength(long length)
+    {
+        return MAX_HEADER_BYTES + (length * 2 * MAX_BITS + MAX_BITS + 1 + 7) / 8 + Integer.BYTES;
+    }
+
+    /**
+     * Checks that a maximum code width is one the format supports.
+     * @throws IllegalArgumentException if it is not.
+     */
+    static int checkMaxBits(int maxBits)
+    {
+        if (maxBits < MIN_BITS || maxBits > MAX_BITS)
+        {
+            throw new IllegalArgumentException("Code width must be between " + MIN_BITS + " and " + MAX_BITS + " bits: " + maxBits);
+        }
+        return maxBits;
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ *  The {@code LzwInputStream} class expands a stream written by {@link LzwEncoder} or
+ *  {@link LzwOutputStream} as it is read, holding no more than one buffer of output at a time.
+ *  The header is read on the first read, so creating the stream never blocks. A read blocks
+ *  only until the next flush point, or until a buffer of output is ready, even when the header
+ *  records the length of the whole output. Since output is handed out as it is expanded, a
+ *  corrupt stream is only reported once its checksum is read.
+ *  <p>
+ *  The underlying stream is read ahead in blocks, so it may be read past the end of the
+ *  compressed stream. Corrupt, truncated and mismatched streams are reported as
+ *  {@link IOException}, with the decoder's {@link IllegalStateException} as the cause.
+ *  <p>
+ *  A single stream is not thread-safe.
+ */
+public class LzwInputStream extends FilterInputStream
+{
+    private final LzwDecoder decoder;
+    private final byte[] single = new byte[1];
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Creates a stream that expands streams without a preset dictionary.
+     * @param in The stream of compressed bytes.
+     */
+    public LzwInputStream(InputStream in)
+    {
+        this(in, new LzwDecoder());
+    }
+
+    /**
+     * Creates a stream that expands with the given decoder, which it takes over until the stream is closed.
+     * @param in The stream of compressed bytes.
+     * @param decoder The decoder to expand with, for example one that knows a preset dictionary.
+     */
+    public LzwInputStream(InputStream in, LzwDecoder decoder)
+    {
+        super(in);
+        this.decoder = decoder;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (closed) throw new IOException("Stream closed");
+        if (len == 0)
+        {
+            return 0;
+        }
+        try
+        {
+            if (!started)
+            {
+                decoder.start(in);
+                started = true;
+            }
+            return decoder.read(b, off, len);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        catch (IllegalStateException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n)
+        {
+            int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (count < 0)
+            {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of expanded bytes that can be read without reading any more compressed input.
+     */
+    @Override
+    public int available() throws IOException
+    {
+        if (closed) throw new IOException("Stream closed");
+        return started ? decoder.available() : 0;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit)
+    {
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        in.close();
+    }
+}
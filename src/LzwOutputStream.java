@@ -0,0 +1,143 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ *  The {@code LzwOutputStream} class compresses everything written to it with an {@link LzwEncoder}
+ *  and writes the stream to the underlying output stream as it goes. Nothing is held back but the
+ *  last phrase, which more input might still make longer.
+ *  <p>
+ *  {@link #flush()} codes everything written so far and marks a flush point, so that an
+ *  {@link LzwInputStream} on the other end of a socket or pipe can read all of it right away.
+ *  The dictionary is kept across flush points, but each one costs a few bytes, so callers that
+ *  flush after every small write should buffer in front of this stream instead.
+ *  {@link #finish()} ends the stream without closing the underlying one, and {@link #close()}
+ *  does both.
+ *  <p>
+ *  A single stream is not thread-safe.
+ */
+public class LzwOutputStream extends FilterOutputStream
+{
+    private final LzwEncoder encoder;
+    private final byte[] single = new byte[1];
+    private boolean finished;
+
+    /**
+     * Creates a stream that compresses with the default settings.
+     * @param out The stream the compressed bytes are written to.
+     * @throws IOException if the header can't be written.
+     */
+    public LzwOutputStream(OutputStream out) throws IOException
+    {
+        this(out, new LzwEncoder());
+    }
+
+    /**
+     * Creates a stream that compresses with the given encoder, which it takes over until the stream is finished.
+     * @param out The stream the compressed bytes are written to.
+     * @param encoder The encoder to compress with, for example one with a preset dictionary.
+     * @throws IOException if the header can't be written.
+     */
+    public LzwOutputStream(OutputStream out, LzwEncoder encoder) throws IOException
+    {
+        super(out);
+        this.encoder = encoder;
+        try
+        {
+            encoder.start(out, LzwFormat.UNKNOWN_LENGTH);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        checkOpen();
+        try
+        {
+            encoder.write(b, off, len);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Codes everything written so far, marks a flush point and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        if (finished)
+        {
+            out.flush();
+            return;
+        }
+        try
+        {
+            encoder.flush();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Codes everything written so far and ends the compressed stream, without closing the underlying
+     * stream. Nothing more can be written after this. Does nothing if the stream is already finished.
+     */
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = true;
+        try
+        {
+            encoder.finish();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Finishes the compressed stream and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void checkOpen() throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream finished");
+        }
+    }
+}
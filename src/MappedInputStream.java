@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  The {@code MappedInputStream} class reads a file through memory-mapped regions instead
+ *  of read() system calls. Each region is mapped with {@link FileChannel#map} and bulk
+ *  reads copy straight out of the page cache, so the file is never loaded onto the heap.
+ *  Files larger than one region are mapped one region at a time.
+ */
+final class MappedInputStream extends InputStream
+{
+    // Mappings are limited to 2 GB, so larger files are mapped in pieces.
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    // File offset just past the current region.
+    private long regionEnd;
+    private MappedByteBuffer region;
+
+    /**
+     * Opens the file for reading.
+     * @param path The file to read.
+     */
+    MappedInputStream(Path path) throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    // Maps the next region once the current one is used up, returning false at the end of the file.
+    private boolean nextRegion() throws IOException
+    {
+        if (region != null && region.hasRemaining())
+        {
+            return true;
+        }
+        if (regionEnd >= size)
+        {
+            return false;
+        }
+        long length = Math.min(REGION_SIZE, size - regionEnd);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, regionEnd, length);
+        regionEnd += length;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return nextRegion() ? region.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (!nextRegion()) return -1;
+        int count = Math.min(len, region.remaining());
+        region.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available()
+    {
+        long remaining = size - regionEnd + (region == null ? 0 : region.remaining());
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        region = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ *  The {@code PipelinedCompressor} class compresses or expands a single stream in three stages, so
+ *  that reading, coding and writing all happen at the same time. A reader thread reads the input in
+ *  chunks, the calling thread codes them, and a writer thread writes the output, each pair of stages
+ *  joined by a {@link ChunkRing}. When a stage falls behind, the one feeding it waits, so no more than
+ *  two rings' worth of data is ever held. On slow disks and network file systems most of the time
+ *  spent waiting on I/O is hidden behind the coding.
+ *  <p>
+ *  The output is exactly what {@link LzwEncoder} and {@link LzwDecoder} write on their own. Unlike
+ *  {@link BlockCompressor}, the stream is coded as one piece, with one dictionary.
+ *  <p>
+ *  If any stage fails, the others are stopped and the first failure is rethrown on the calling thread.
+ *  Errors from the underlying streams are rethrown as {@link UncheckedIOException}.
+ */
+public class PipelinedCompressor
+{
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final LzwEncoder encoder;
+    private final LzwDecoder decoder;
+    private final int chunkSize;
+    private final int depth;
+
+    /**
+     * Creates a pipeline with the default coders, chunk size and ring depth.
+     */
+    public PipelinedCompressor()
+    {
+        this(new LzwEncoder(), new LzwDecoder(), DEFAULT_CHUNK_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates a pipeline that codes with the given encoder and decoder, which it takes over.
+     * @param encoder The encoder for compress().
+     * @param decoder The decoder for expand().
+     * @param chunkSize The number of bytes the reader and writer move at a time.
+     * @param depth The number of chunks each ring holds.
+     */
+    public PipelinedCompressor(LzwEncoder encoder, LzwDecoder decoder, int chunkSize, int depth)
+    {
+        if (chunkSize < 1 || depth < 1)
+        {
+            throw new IllegalArgumentException("Illegal chunk size or depth: " + chunkSize + ", " + depth);
+        }
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.chunkSize = chunkSize;
+        this.depth = depth;
+    }
+
+    /**
+     * Compresses everything left in the input stream and writes it to the output stream.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream of bytes to compress.
+     * @param length The number of bytes left in the input stream, or -1 if it isn't known.
+     * @param out The stream the compressed bytes are written to.
+     */
+    public void compress(InputStream in, long length, OutputStream out)
+    {
+        run(in, out, (input, output) -> encoder.encode(input, length, output));
+    }
+
+    /**
+     * Expands the stream in the input stream and writes it to the output stream.
+     * The output stream is flushed but neither stream is closed.
+     * @param in The stream of compressed bytes.
+     * @param out The stream the expanded bytes are written to.
+     */
+    public void expand(InputStream in, OutputStream out)
+    {
+        run(in, out, decoder::decode);
+    }
+
+    // Runs the coder on this thread between a reader and a writer thread.
+    private void run(InputStream in, OutputStream out, BiConsumer<InputStream, OutputStream> coder)
+    {
+        ChunkRing input = new ChunkRing(depth, chunkSize);
+        ChunkRing output = new ChunkRing(depth, chunkSize);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = start("lzw-reader", () -> read(in, input), failure, input, output);
+        Thread writer = start("lzw-writer", () -> write(output, out), failure, input, output);
+        try
+        {
+            RingOutputStream coded = new RingOutputStream(output);
+            coder.accept(new RingInputStream(input), coded);
+            coded.flush();
+            output.close();
+            // The coder may stop before the end of the input, so don't leave the reader waiting for room.
+            input.stop();
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+        catch (ChunkRing.Stopped e)
+        {
+            // Another stage failed, and has already said why.
+        }
+        catch (Throwable e)
+        {
+            failure.compareAndSet(null, e);
+        }
+        // The reader and writer may be stuck in a read or write that will never return, so they are not waited for.
+        Throwable t = failure.get();
+        if (t != null)
+        {
+            input.stop();
+            output.stop();
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            if (t instanceof IOException) throw new UncheckedIOException((IOException) t);
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // Starts a stage on its own thread. If it fails, the failure is recorded before the rings are stopped, so
+    // whoever the stop wakes up finds out why.
+    private static Thread start(String name, Stage stage, AtomicReference<Throwable> failure, ChunkRing... rings)
+    {
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                stage.run();
+            }
+            catch (ChunkRing.Stopped e)
+            {
+                // Stopped by another stage.
+            }
+            catch (Throwable e)
+            {
+                failure.compareAndSet(null, e);
+                for (ChunkRing ring : rings)
+                {
+                    ring.stop();
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // Reads the input into chunks, filling each one unless the input ends first.
+    private static void read(InputStream in, ChunkRing ring) throws IOException
+    {
+        while (true)
+        {
+            byte[] chunk = ring.claim();
+            int length = in.readNBytes(chunk, 0, chunk.length);
+            if (length > 0)
+            {
+                ring.publish(length);
+            }
+            if (length < chunk.length)
+            {
+                ring.close();
+                return;
+            }
+        }
+    }
+
+    // Writes the chunks out in order.
+    private static void write(ChunkRing ring, OutputStream out) throws IOException
+    {
+        byte[] chunk;
+        while ((chunk = ring.take()) != null)
+        {
+            out.write(chunk, 0, ring.length());
+            ring.release();
+        }
+        out.flush();
+    }
+
+    private interface Stage
+    {
+        void run() throws IOException;
+    }
+
+    // Reads the chunks of a ring as one stream.
+    private static final class RingInputStream extends InputStream
+    {
+        private final ChunkRing ring;
+        private byte[] chunk;
+        private int position;
+        private int length;
+
+        RingInputStream(ChunkRing ring)
+        {
+            this.ring = ring;
+        }
+
+        @Override
+        public int read()
+        {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (position == length)
+            {
+                if (chunk != null)
+                {
+                    ring.release();
+                }
+                chunk = ring.take();
+                if (chunk == null)
+                {
+                    return -1;
+                }
+                position = 0;
+                length = ring.length();
+            }
+            int count = Math.min(len, length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+
+    // Writes a stream into the chunks of a ring, publishing each one once it is full or flushed.
+    private static final class RingOutputStream extends OutputStream
+    {
+        private final ChunkRing ring;
+        private byte[] chunk;
+        private int count;
+
+        RingOutputStream(ChunkRing ring)
+        {
+            this.ring = ring;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            while (len > 0)
+            {
+                if (chunk == null)
+                {
+                    chunk = ring.claim();
+                    count = 0;
+                }
+                int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == chunk.length)
+                {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush()
+        {
+            if (chunk != null && count > 0)
+            {
+                ring.publish(count);
+                chunk = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ *  The {@code PresetDictionary} class is a fixed set of phrases that an {@link LzwEncoder} and
+ *  {@link LzwDecoder} load before coding starts, so that short inputs get the benefit of
+ *  common phrases from their first byte instead of having to learn them. Presets are made by
+ *  {@link DictionaryTrainer} from a sample of typical inputs.
+ *  <p>
+ *  Phrase i gets code {@code FIRST_CODE + i}, and is stored as the code of its prefix and its
+ *  last byte, just like a phrase the coder learned on its own. Every prefix comes before the
+ *  phrases built on it. The id is a checksum of the phrases, and is written in the header of
+ *  each stream coded with the preset, so a decoder can tell which preset it needs.
+ *  <p>
+ *  The file starts with {@code MAGIC}, the id and the number of phrases, then each phrase's
+ *  prefix code and last byte.
+ */
+public final class PresetDictionary
+{
+    // "LZWD".
+    public static final int MAGIC = 0x4C5A5744;
+
+    private final int[] prefixes;
+    private final byte[] lastBytes;
+    private final byte[][] words;
+    private final int id;
+
+    /**
+     * Creates a preset from its phrases, given as prefix codes and last bytes in code order.
+     * @throws IllegalArgumentException if a phrase's prefix is not a single byte or an earlier phrase.
+     */
+    PresetDictionary(int[] prefixes, byte[] lastBytes)
+    {
+        this.prefixes = prefixes.clone();
+        this.lastBytes = lastBytes.clone();
+        this.words = new byte[prefixes.length][];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            int prefix = prefixes[i];
+            byte[] word;
+            if (prefix >= 0 && prefix < LzwFormat.EXIT_CODE)
+            {
+                word = new byte[] { (byte) prefix, lastBytes[i] };
+            }
+            else if (prefix >= LzwFormat.FIRST_CODE && prefix < LzwFormat.FIRST_CODE + i)
+            {
+                byte[] prefixWord = words[prefix - LzwFormat.FIRST_CODE];
+                word = new byte[prefixWord.length + 1];
+                System.arraycopy(prefixWord, 0, word, 0, prefixWord.length);
+                word[prefixWord.length] = lastBytes[i];
+            }
+            else
+            {
+                throw new IllegalArgumentException("Phrase " + i + " has an invalid prefix code " + prefix);
+            }
+            words[i] = word;
+            crc.update(prefix >>> 16);
+            crc.update(prefix >>> 8);
+            crc.update(prefix);
+            crc.update(lastBytes[i]);
+        }
+        this.id = (int) crc.getValue();
+    }
+
+    /**
+     * Returns the id that streams coded with this preset carry in their header.
+     */
+    public int id()
+    {
+        return id;
+    }
+
+    /**
+     * Returns the number of phrases in the preset.
+     */
+    public int size()
+    {
+        return prefixes.length;
+    }
+
+    /**
+     * Returns the prefix code of phrase i.
+     */
+    int prefix(int i)
+    {
+        return prefixes[i];
+    }
+
+    /**
+     * Returns the last byte of phrase i.
+     */
+    byte lastByte(int i)
+    {
+        return lastBytes[i];
+    }
+
+    /**
+     * Returns all the bytes of phrase i. The array is shared and must not be modified.
+     */
+    byte[] word(int i)
+    {
+        return words[i];
+    }
+
+    /**
+     * Writes the preset to the given stream, which is flushed but not closed.
+     */
+    public void write(OutputStream out)
+    {
+        try
+        {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(id);
+            data.writeInt(prefixes.length);
+            for (int i = 0; i < prefixes.length; i++)
+            {
+                data.writeInt(prefixes[i]);
+                data.writeByte(lastBytes[i]);
+            }
+            data.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a preset written by write().
+     * @throws IllegalStateException if the stream does not hold a valid preset.
+     */
+    public static PresetDictionary read(InputStream in)
+    {
+        try
+        {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC) throw new IllegalStateException("Not a preset dictionary");
+            int id = data.readInt();
+            int count = data.readInt();
+            if (count < 0 || count > (1 << LzwFormat.MAX_BITS) - LzwFormat.FIRST_CODE)
+            {
+                throw new IllegalStateException("Corrupt preset dictionary size: " + count);
+            }
+            int[] prefixes = new int[count];
+            byte[] lastBytes = new byte[count];
+            for (int i = 0; i < count; i++)
+            {
+                prefixes[i] = data.readInt();
+                lastBytes[i] = data.readByte();
+            }
+            PresetDictionary preset = new PresetDictionary(prefixes, lastBytes);
+            if (preset.id() != id) throw new IllegalStateException("Preset dictionary does not match its id");
+            return preset;
+        }
+        catch (EOFException e)
+        {
+            throw new IllegalStateException("Truncated preset dictionary", e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalStateException("Corrupt preset dictionary", e);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a preset from a file.
+     */
+    public static PresetDictionary read(Path path)
+    {
+        try (InputStream in = Files.newInputStream(path))
+        {
+            return read(in);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
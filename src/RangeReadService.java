@@ -0,0 +1,186 @@
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  The {@code RangeReadService} class serves byte ranges out of many indexed block
+ *  containers at once. Archives are opened on first use and kept open, and every
+ *  expanded block goes through a shared {@link BlockCache}, so repeated reads of popular
+ *  regions are memory copies instead of LZW expands.
+ *  <p>
+ *  All methods are thread-safe. An archive that is evicted while other threads are reading it is
+ *  only closed once the last of those reads is done, and the blocks they load from it are dropped
+ *  from the cache then. Each opening of an archive caches its blocks under its own name, so they
+ *  are never mixed up with the blocks of the file that replaced it.
+ */
+public class RangeReadService implements Closeable
+{
+    private final ConcurrentHashMap<Path, Handle> archives = new ConcurrentHashMap<>();
+    private final BlockCache cache;
+    private final PresetDictionary[] presets;
+    // Numbers each opening of an archive, to give it a name in the cache of its own.
+    private final AtomicLong openings = new AtomicLong();
+
+    /**
+     * Creates a service whose block cache may hold up to the given number of uncompressed bytes.
+     * @param cacheBytes The cache budget in bytes.
+     * @param presets The preset dictionaries the archives' blocks may need.
+     */
+    public RangeReadService(long cacheBytes, PresetDictionary... presets)
+    {
+        this(new BlockCache(cacheBytes), presets);
+    }
+
+    /**
+     * Creates a service that uses the given block cache, which may be shared with other services.
+     * @param cache The cache for expanded blocks.
+     * @param presets The preset dictionaries the archives' blocks may need.
+     */
+    public RangeReadService(BlockCache cache, PresetDictionary... presets)
+    {
+        this.cache = cache;
+        this.presets = presets.clone();
+    }
+
+    /**
+     * Reads a range of the uncompressed data of an indexed block container.
+     * @param path The archive file.
+     * @param offset The uncompressed offset of the first byte to read.
+     * @param length The number of bytes to read.
+     * @return the bytes from offset to offset + length.
+     * @throws IndexOutOfBoundsException if the range is not inside the archive.
+     * @throws IllegalStateException if the file is not an indexed block container or is corrupt.
+     */
+    public byte[] read(Path path, long offset, int length)
+    {
+        Handle handle = acquire(path.toAbsolutePath().normalize());
+        try
+        {
+            BlockArchive archive = handle.archive;
+            return archive.read(offset, length,
+                    block -> cache.get(handle.name, block, () -> archive.readBlock(block)));
+        }
+        finally
+        {
+            release(handle);
+        }
+    }
+
+    /**
+     * Returns the uncompressed size of an archive.
+     * @param path The archive file.
+     * @return the number of uncompressed bytes in the archive.
+     */
+    public long size(Path path)
+    {
+        Handle handle = acquire(path.toAbsolutePath().normalize());
+        try
+        {
+            return handle.archive.size();
+        }
+        finally
+        {
+            release(handle);
+        }
+    }
+
+    /**
+     * Closes an archive and drops its blocks from the cache, for example after the file was replaced.
+     * @param path The archive file.
+     */
+    public void evict(Path path)
+    {
+        Handle handle = archives.remove(path.toAbsolutePath().normalize());
+        if (handle != null)
+        {
+            synchronized (handle)
+            {
+                handle.evicted = true;
+                if (handle.users == 0)
+                {
+                    handle.archive.close();
+                }
+            }
+            // Frees its blocks now. Any that reads still running load from it are dropped when the last one is done.
+            cache.invalidate(handle.name);
+        }
+    }
+
+    // Returns the open archive for a path, opening it if need be, and counts the caller as one of its users.
+    private Handle acquire(Path key)
+    {
+        while (true)
+        {
+            Handle handle = archives.computeIfAbsent(key, this::open);
+            synchronized (handle)
+            {
+                if (!handle.evicted)
+                {
+                    handle.users++;
+                    return handle;
+                }
+            }
+            // Evicted between the lookup and now, so it is already out of the map. Open it again.
+        }
+    }
+
+    // Closes an evicted archive once its last user is done with it, and drops the blocks they loaded meanwhile.
+    private void release(Handle handle)
+    {
+        boolean closed = false;
+        synchronized (handle)
+        {
+            if (--handle.users == 0 && handle.evicted)
+            {
+                handle.archive.close();
+                closed = true;
+            }
+        }
+        if (closed)
+        {
+            cache.invalidate(handle.name);
+        }
+    }
+
+    private Handle open(Path key)
+    {
+        return new Handle(new BlockArchive(key, presets), key + "#" + openings.incrementAndGet());
+    }
+
+    /**
+     * Returns the block cache, for its hit and miss counters.
+     * @return the cache.
+     */
+    public BlockCache cache()
+    {
+        return cache;
+    }
+
+    // An open archive, its name in the cache, and how many reads are using it.
+    private static final class Handle
+    {
+        final BlockArchive archive;
+        final String name;
+        int users;
+        boolean evicted;
+
+        Handle(BlockArchive archive, String name)
+        {
+            this.archive = archive;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Closes every open archive.
+     */
+    @Override
+    public void close()
+    {
+        for (Path key : archives.keySet())
+        {
+            evict(key);
+        }
+    }
+}
@@ -1,25 +1,47 @@
+import java.util.Arrays;
+
 /**
  * The {@code TST} class encodes a ternary search trie for use with LZW compression.
+ * The first level is a direct-indexed array of R roots (one per 8-bit symbol), so
+ * matching the first byte of a word is a single array access rather than a
+ * walk down a ternary chain. Each root then feeds into its own ternary subtrie.
  *
  * @author Zach Blick
  * @Credit: Robert Sedgewick
  *
  * @Date: Written lovingly in 2024 for Adventures in Algorithms at Menlo School in Atherton, CA.
  */
-public class TST {
+public class TST implements Dictionary {
 
     public static final int EMPTY = -1;
-    private Node root;
+    // Number of symbols in the direct-indexed first level (extended ASCII).
+    private static final int R = 256;
+    private final Node[] roots = new Node[R];
+
+    // The node and length of the word found by the last call to match().
+    private Node matchNode;
+    private int matchLength;
 
     /**
-     * Each Node contains its own charater, as well as references to its three children.
-     * If this Node's character is the terminus of a coded word, it will also contain
-     * the relevant code.
+     * Each Node contains its own byte, as well as references to its three children.
+     * If this Node's byte is the terminus of a coded word, it will also contain
+     * the relevant code. Below the roots, siblings are ordered by the signed value of
+     * their byte: any fixed order works for the search, and it saves masking on every
+     * comparison.
      */
     private class Node {
         Node left, mid, right;
-        char c;
-        int code;
+        byte c;
+        int code = EMPTY;
+    }
+
+    /**
+     * Removes every word from the TST.
+     */
+    public void clear() {
+        Arrays.fill(roots, null);
+        matchNode = null;
+        matchLength = 0;
     }
 
     /**
@@ -27,12 +49,31 @@ public class TST {
      * @param s The word to insert.
      * @param code The code for the given word.
      */
-    public void insert(String s, int code) {
-        root = insert(s, root, code, 0);
+    public void insert(byte[] s, int code) {
+        Node n = root(s[0], true);
+        if (s.length == 1) n.code = code;
+        else n.mid = insert(s, n.mid, code, 1);
     }
 
-    public Node insert(String s, Node n, int code, int depth) {
-        char current = s.charAt(depth);
+    /**
+     * Returns the root node for the given first byte, creating it if asked to.
+     * @param b The first byte of a word.
+     * @param create Whether to create the root if it does not exist yet.
+     * @return the root node for b, or null if it does not exist and create is false.
+     */
+    private Node root(byte b, boolean create) {
+        int i = b & 0xff;
+        Node n = roots[i];
+        if (n == null && create) {
+            n = new Node();
+            n.c = b;
+            roots[i] = n;
+        }
+        return n;
+    }
+
+    private Node insert(byte[] s, Node n, int code, int depth) {
+        byte current = s[depth];
         if(n == null) {
             n = new Node();
             n.c = current;
@@ -41,71 +82,138 @@ public class TST {
             n.left = insert(s, n.left, code, depth);
         else if (current > n.c)
             n.right = insert(s, n.right, code, depth);
-        else if (depth < s.length() - 1) {
+        else if (depth < s.length - 1) {
             n.mid = insert(s, n.mid, code, depth + 1);
         }
         else n.code = code;
         return n;
     }
 
-    public String getLongestPrefix(String s) {
-        return getLongestPrefix(s, 0);
+    /**
+     * Finds the longest word in the TST that matches the bytes of s from index start up to
+     * index end, in a single walk. The matched node is remembered so that matchLength()
+     * and extend() can use it afterwards.
+     * @param s The bytes to match against.
+     * @param start The starting index of the match.
+     * @param end The index one past the last byte that may be matched.
+     * @return the code of the longest matching word, or EMPTY if not even the first
+     * byte matches.
+     */
+    public int match(byte[] s, int start, int end) {
+        Node n = root(s[start], false);
+        matchNode = n;
+        matchLength = 0;
+        if (n == null) return EMPTY;
+        matchLength = 1;
+
+        int depth = start + 1;
+        n = n.mid;
+        while (n != null && depth < end) {
+            byte current = s[depth];
+            if (current < n.c)
+                n = n.left;
+            else if (current > n.c)
+                n = n.right;
+            else {
+                depth++;
+                if (n.code != EMPTY) {
+                    matchNode = n;
+                    matchLength = depth - start;
+                }
+                n = n.mid;
+            }
+        }
+        return matchNode.code;
     }
 
     /**
-     * Returns the longest prefix in the TST that matches the given substring of s starting at index start.
-     * @param s The target word, from which the substring is constructed.
-     * @param start The starting index of the substring.
-     * @return a String of all characters that match the given substring.
-     * If no characters match, the empty String is returned.
+     * Returns the number of bytes matched by the last call to match().
+     * @return the length of the last match, or 0 if nothing matched.
      */
-    public String getLongestPrefix(String s,  int start) {
-        return prefix(s, root, start, "");
+    public int matchLength() {
+        return matchLength;
     }
 
-    private String prefix(String s, Node n, int depth, String prefix) {
-        if (n == null) return prefix;
-
-        char current = s.charAt(depth);
-        if (current < n.c)
-            return prefix(s, n.left, depth, prefix);
-        else if (current > n.c)
-            return prefix(s, n.right, depth, prefix);
-        else if (depth < s.length() - 1)
-            return prefix(s, n.mid, depth + 1, prefix + current);
-        else return prefix + current;
+    /**
+     * Inserts the word formed by the last match followed by c, attaching the new node
+     * directly below the matched node instead of walking down from the root again.
+     * @param c The byte that extends the last match.
+     * @param code The code for the new word.
+     */
+    public void extend(byte c, int code) {
+        if (matchNode == null) throw new IllegalStateException("No match to extend");
+        Node n = matchNode.mid;
+        if (n == null) {
+            matchNode.mid = newNode(c, code);
+            return;
+        }
+        while (true) {
+            if (c < n.c) {
+                if (n.left == null) {
+                    n.left = newNode(c, code);
+                    return;
+                }
+                n = n.left;
+            }
+            else if (c > n.c) {
+                if (n.right == null) {
+                    n.right = newNode(c, code);
+                    return;
+                }
+                n = n.right;
+            }
+            else {
+                n.code = code;
+                return;
+            }
+        }
     }
 
+    private Node newNode(byte c, int code) {
+        Node n = new Node();
+        n.c = c;
+        n.code = code;
+        return n;
+    }
 
     /**
-     * Looks up the given String in the TST, returning the code associated with the word.
-     * @param s The target String
+     * Looks up the given word in the TST, returning the code associated with it.
+     * @param s The target word.
      * @return the corresponding code. If no code is associated, or if the target word is not
      * present, EMPTY is returned.
      */
-    public int lookup(String s) {
-        return lookup(s, root, 0);
+    public int lookup(byte[] s) {
+        Node n = root(s[0], false);
+        if (n == null) return EMPTY;
+        if (s.length == 1) return n.code;
+        return lookup(s, n.mid, 1);
     }
 
-    public int lookup(String s, Node n, int depth) {
+    private int lookup(byte[] s, Node n, int depth) {
         if (n == null) return EMPTY;
 
-        char current = s.charAt(depth);
+        byte current = s[depth];
         if (current < n.c)
             return lookup(s, n.left, depth);
         else if (current > n.c)
             return lookup(s, n.right, depth);
-        else if (depth < s.length() - 1)
+        else if (depth < s.length - 1)
             return lookup(s, n.mid, depth + 1);
         else return n.code;
 
     }
 
     /**
-     * Recursively prints the TST (using a preorder traversal).
+     * Recursively prints the TST (using a preorder traversal), showing each byte as the
+     * Latin-1 character with the same value.
      */
     public void print() {
-        printTST(root, "");
+        for (Node n : roots) {
+            if (n == null) continue;
+            String s = String.valueOf((char) (n.c & 0xff));
+            if (n.code != EMPTY) System.out.println(s);
+            printTST(n.mid, s);
+        }
     }
 
     private void printTST(Node n, String s) {
@@ -113,12 +221,13 @@ public class TST {
             return;
         }
 
+        printTST(n.left, s);
+
         // If this node ends a word, print it out!
-        s += n.c;
-        if (n.code != EMPTY) System.out.println(s);
+        String word = s + (char) (n.c & 0xff);
+        if (n.code != EMPTY) System.out.println(word);
+        printTST(n.mid, word);
 
-        printTST(n.left, s);
-        printTST(n.mid, s);
         printTST(n.right, s);
     }
 }
@@ -2,6 +2,28 @@
  *  Compilation:  javac TextCompressor.java
  *  Execution:    java TextCompressor - < input.txt   (compress)
  *  Execution:    java TextCompressor + < input.txt   (expand)
+ *  Execution:    java TextCompressor - input.txt output.lzw
+ *                (file mode: the input file is memory-mapped, works with + too, and a
+ *                 file that looks already compressed is stored as it is)
+ *  Execution:    java -Dlzw.dictionary=hash TextCompressor - < input.txt
+ *                (compress with the tst, array or hash dictionary; array is the default)
+ *  Execution:    java -Dlzw.maxBits=20 TextCompressor - < input.txt
+ *                (let codes grow from 9 up to 20 bits instead of the default 16)
+ *  Execution:    java -Dlzw.policy=freeze TextCompressor - < input.txt
+ *                (keep the full dictionary instead of resetting it when the ratio drops,
+ *                 or recycle the least recently used phrases with lzw.policy=lru)
+ *  Execution:    java -Dlzw.preset=events.dict TextCompressor - < event.json
+ *                (start from a preset dictionary made by DictionaryTrainer; expand
+ *                 needs the same -Dlzw.preset)
+ *  Execution:    java -Dlzw.blockSize=1048576 -Dlzw.threads=8 TextCompressor - < input.txt
+ *                (compress independent blocks in parallel; expand detects the container)
+ *  Execution:    java -Dlzw.blockSize=1048576 -Dlzw.index=true TextCompressor - < input.txt
+ *                (also write a block index, so BlockArchive can read any byte range)
+ *  Execution:    java -Dlzw.pipeline=true TextCompressor - input.txt output.lzw
+ *                (read, code and write on separate threads, for slow disks; works with + too)
+ *  Execution:    java -Dlzw.concurrency=64 TextCompressor - inputDir outputDir
+ *                (batch mode: compress every file under inputDir to outputDir/<path>.lzw in one
+ *                 JVM; + expands a tree back, and @files.txt in place of inputDir reads a list)
  *  Dependencies: BinaryIn.java BinaryOut.java
  *  Data files:   abra.txt
  *                jabberwocky.txt
@@ -17,128 +39,168 @@
  *  % java DumpBinary 0 < alice.txt
  *  1104064 bits
  *  % java TextCompressor - < alice.txt | java DumpBinary 0
- *  480760 bits
- *  = 43.54% compression ratio!
+ *  426864 bits (480760 bits with fixed 12-bit codes)
+ *  = 38.66% compression ratio!
  ******************************************************************************/
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  *  The {@code TextCompressor} class provides static methods for compressing
- *  and expanding natural language through textfile input.
+ *  and expanding natural language through textfile input. It is a thin command
+ *  line wrapper around {@link LzwEncoder} and {@link LzwDecoder}, which can also
+ *  be used directly on any streams or byte arrays.
  *
  *  @author Zach Blick, Beckett Porter
  */
 public class TextCompressor
 {
-    // Instance variables.
-    private static TST tst = new TST();
-    private static final int EXIT_CODE = 256;
-    // Set the initial current code to add to one more than the exit code.
-    private static int currentCodeToAdd = EXIT_CODE + 1;
-    // 12 bits per code works well for this.
-    private static final int BITS_PER_CODE = 12;
-    // Set the max number of codes equal to 2^BITS_PER_CODE.
-    private static final int NUM_CODES = 1 << BITS_PER_CODE;
-
-    private static void compress()
+    // What the encoder does once the dictionary is full.
+    private static final DictionaryPolicy POLICY = DictionaryPolicy.of(System.getProperty("lzw.policy", LzwEncoder.DEFAULT_POLICY.name()));
+    // The dictionary implementation is picked at runtime so they can be compared on real workloads.
+    // The LRU policy needs one that can remove words, so it defaults to hash.
+    private static final String DICTIONARY = System.getProperty("lzw.dictionary",
+            POLICY == DictionaryPolicy.LRU ? "hash" : LzwEncoder.DEFAULT_DICTIONARY);
+    // The widest code the encoder may use. Wider codes let the dictionary keep learning for longer.
+    private static final int MAX_BITS = Integer.getInteger("lzw.maxBits", LzwFormat.DEFAULT_MAX_BITS);
+    // Phrases to start from, trained on typical inputs by DictionaryTrainer, or null.
+    private static final PresetDictionary PRESET = System.getProperty("lzw.preset") == null ? null
+            : PresetDictionary.read(Path.of(System.getProperty("lzw.preset")));
+    // When set, the input is split into blocks of this many bytes that are compressed in parallel.
+    private static final int BLOCK_SIZE = Integer.getInteger("lzw.blockSize", 0);
+    // Whether block mode also writes a block index for random access.
+    private static final boolean INDEX = Boolean.getBoolean("lzw.index");
+    // Number of threads for block mode, all cores by default.
+    private static final int THREADS = Integer.getInteger("lzw.threads", Runtime.getRuntime().availableProcessors());
+    // Whether a single stream is read and written on threads of its own while it is coded.
+    private static final boolean PIPELINE = Boolean.getBoolean("lzw.pipeline");
+    // The most files batch mode codes at once.
+    private static final int CONCURRENCY = Integer.getInteger("lzw.concurrency", BatchCompressor.DEFAULT_CONCURRENCY);
+
+    // All of the work is done by an LzwEncoder, which owns its own state and isn't tied to standard in and out.
+    // In block mode, a BlockCompressor runs one encoder per block in parallel instead.
+    // In pipeline mode, a PipelinedCompressor overlaps the reading and writing with the encoder.
+    // The length of the input goes in the header when it is known, or is -1.
+    private static void compress(InputStream in, long length, OutputStream out)
     {
-        // Call to helper method that initializes the TST with values from 0 to EXIT_CODE.
-        initializeTST();
-
-        // Read the entire string in at once.
-        String text = BinaryStdIn.readString();
-        // Only use an index to shift the window we are looking at, faster than using substring.
-        int index = 0;
-
-        // Go while there is still more of the text to read in.
-        while (index < text.length())
+        if (BLOCK_SIZE > 0)
         {
-            // First, get the longest prefix.
-            String longestPrefix = tst.getLongestPrefix(text, index);
-
-            // Get the code to write by looking up the corresponding code for the prefix.
-            int codeToWrite = tst.lookup(longestPrefix);
-
-            // Write out the code using BITS_PER_CODE number of bits.
-            BinaryStdOut.write(codeToWrite, BITS_PER_CODE);
-
-            // Second, add a new code for longestPrefix + next char if it won't overflow the max number of codes
-            // or the length of the text.
-            if (currentCodeToAdd < NUM_CODES && index + longestPrefix.length() < text.length())
-            {
-                tst.insert(longestPrefix + text.charAt(index + longestPrefix.length()), currentCodeToAdd++);
-            }
-
-            // Move index forward by the prefix length.
-            index += longestPrefix.length();
+            ForkJoinPool pool = new ForkJoinPool(THREADS);
+            new BlockCompressor(BLOCK_SIZE, TextCompressor::newEncoder, pool, INDEX).compress(in, out);
+            pool.shutdown();
         }
-        // Write out the exit code with bits per code.
-        BinaryStdOut.write(EXIT_CODE, BITS_PER_CODE);
+        else if (PIPELINE)
+        {
+            pipeline().compress(in, length, out);
+        }
+        else
+        {
+            newEncoder().encode(in, length, out);
+        }
+    }
+
+    // Creates an encoder with the settings from the command line.
+    private static LzwEncoder newEncoder()
+    {
+        return new LzwEncoder(Dictionary.create(DICTIONARY), MAX_BITS, POLICY, PRESET);
+    }
 
-        BinaryStdOut.close();
+    // Creates a decoder that knows the preset from the command line, if there is one.
+    private static LzwDecoder newDecoder()
+    {
+        return PRESET == null ? new LzwDecoder() : new LzwDecoder(PRESET);
     }
 
-    private static void expand()
+    // Creates a pipeline around a coder with the settings from the command line.
+    private static PipelinedCompressor pipeline()
     {
-        // Map that has integer codes corresponding to Strings.
-        // Make it the max length of codes we can store (NUM_CODES).
-        String[] codeStringMap = new String[NUM_CODES];
+        return new PipelinedCompressor(newEncoder(), newDecoder(),
+                PipelinedCompressor.DEFAULT_CHUNK_SIZE, PipelinedCompressor.DEFAULT_DEPTH);
+    }
 
-        // Fill up the first EXIT_CODE number of slots in the map.
-        for (int i = 0; i < EXIT_CODE; i++)
+    // All of the work is done by an LzwDecoder, which owns its own state and isn't tied to standard in and out.
+    // Block containers are recognized by their magic number and expanded in parallel.
+    private static void expand(InputStream input, OutputStream out)
+    {
+        BufferedInputStream in = new BufferedInputStream(input);
+        if (BlockCompressor.isBlockContainer(in))
         {
-            codeStringMap[i] = String.valueOf((char)i);
+            ForkJoinPool pool = new ForkJoinPool(THREADS);
+            new BlockCompressor(BlockCompressor.DEFAULT_BLOCK_SIZE, TextCompressor::newEncoder, TextCompressor::newDecoder,
+                    pool, false).expand(in, out);
+            pool.shutdown();
         }
-
-        // Read in the first code.
-        int currentCode = BinaryStdIn.readInt(BITS_PER_CODE);
-        int lookAheadCode;
-
-        // Go until the exit code is found.
-        while (currentCode != EXIT_CODE)
+        else if (PIPELINE)
         {
-            // Set the current string equal to the string corresponding to the current code in the map.
-            String currentString = codeStringMap[currentCode];
-
-            // The look ahead code is the next code we read in.
-            lookAheadCode = BinaryStdIn.readInt(BITS_PER_CODE);
-
-            // The look ahead string is the string corresponding to this look ahead code in the map.
-            String lookAheadString = codeStringMap[lookAheadCode];
-
-            // This check prevents the edge case issue, where if the code hasn't been initialized in the map yet,
-            // set the look ahead string to the current string + the first letter of the current string.
-            if (codeStringMap[lookAheadCode] == null)
-            {
-                lookAheadString = currentString + currentString.charAt(0);
-            }
-
-            // Add a new code to the codeStringMap if we have room in the number of codes.
-            if (currentCodeToAdd < NUM_CODES)
-            {
-                codeStringMap[currentCodeToAdd++] = currentString + lookAheadString.charAt(0);
-            }
-            // Write out the string corresponding to the current code.
-            BinaryStdOut.write(codeStringMap[currentCode]);
-
-            // Set the current code equal to the next code because we already read it in.
-            currentCode = lookAheadCode;
+            pipeline().expand(in, out);
+        }
+        else
+        {
+            newDecoder().decode(in, out);
         }
-        BinaryStdOut.close();
     }
 
-    // Initializes the TST with values from 0 to EXIT_CODE.
-    private static void initializeTST()
+    // Runs batch mode, reporting each failed file and then the totals on standard error.
+    private static void batch(boolean compress, String input, Path outputDir)
     {
-        for (int i = 0; i < EXIT_CODE; i++)
+        BatchCompressor batch = new BatchCompressor(TextCompressor::newEncoder, TextCompressor::newDecoder, CONCURRENCY);
+        BatchCompressor.Report report;
+        if (input.startsWith("@"))
+        {
+            report = batch.run(compress, Path.of(""), BatchCompressor.readList(Path.of(input.substring(1))), outputDir);
+        }
+        else if (compress)
+        {
+            report = batch.compress(Path.of(input), outputDir);
+        }
+        else
         {
-            String s = String.valueOf((char) i);
-            tst.insert(s, i);
+            report = batch.expand(Path.of(input), outputDir);
+        }
+        report.failures().forEach((file, e) -> System.err.println(file + ": " + e));
+        System.err.println(report);
+        if (!report.failures().isEmpty())
+        {
+            System.exit(1);
         }
     }
 
-    public static void main(String[] args) {
-        if      (args[0].equals("-")) compress();
-        else if (args[0].equals("+")) expand();
+    public static void main(String[] args) throws IOException {
+        boolean compress;
+        if      (args[0].equals("-")) compress = true;
+        else if (args[0].equals("+")) compress = false;
         else throw new IllegalArgumentException("Illegal command line argument");
+
+        // A directory or an @list of files is coded file by file into the output directory, in one JVM.
+        if (args.length == 3 && (args[1].startsWith("@") || Files.isDirectory(Path.of(args[1]))))
+        {
+            batch(compress, args[1], Path.of(args[2]));
+            return;
+        }
+
+        // With two file names, memory-map the input file and write the output file through a direct buffer.
+        // A plain compress goes through the encoder's own file mode, which knows the whole file up front and so
+        // can store it as it is when it looks already compressed. Standard in is always coded.
+        if (args.length == 3 && compress && BLOCK_SIZE == 0 && !PIPELINE)
+        {
+            newEncoder().encode(Path.of(args[1]), Path.of(args[2]));
+        }
+        else if (args.length == 3)
+        {
+            try (InputStream in = new MappedInputStream(Path.of(args[1]));
+                 OutputStream out = ChannelOutputStream.create(Path.of(args[2])))
+            {
+                if (compress) compress(in, Files.size(Path.of(args[1])), out);
+                else expand(in, out);
+            }
+        }
+        else if (compress) compress(System.in, LzwFormat.UNKNOWN_LENGTH, System.out);
+        else expand(System.in, System.out);
     }
 }